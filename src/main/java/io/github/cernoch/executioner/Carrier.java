@@ -0,0 +1,162 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2017 Radomír Černoch (radomir.cernoch at gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.cernoch.executioner;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Reusable {@link Futuroid}, which carries one computation after another.
+ * 
+ * <p>The {@link #task} of a future cannot change, therefore the task
+ * of a carrier is a {@link Slot}, which delegates to the current
+ * computation.</p>
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ * @see ThreadPool#execute(Runnable)
+ * @see ThreadPool#recycle(Futuroid)
+ */
+final class Carrier extends Futuroid<Object, Exception> {
+    
+    /**
+     * Holder of the current computation.
+     */
+    private static final class Slot implements Call<Object, Exception> {
+        
+        /**
+         * Current legacy computation, or {@code null}.
+         */
+        private Runnable command;
+        
+        /**
+         * Current computation, or {@code null}.
+         */
+        private Call<?,?> call;
+
+        @Override
+        public Object call() throws Exception {
+            if (command != null) {
+                command.run();
+                return null;
+            }
+            return call.call();
+        }
+    }
+    
+    /**
+     * Updater of the {@link #users} field.
+     */
+    private static final AtomicIntegerFieldUpdater<Carrier> USERS
+            = AtomicIntegerFieldUpdater.newUpdater(Carrier.class, "users");
+    
+    /**
+     * Same as the {@link #task}, but with a known class.
+     */
+    private final Slot slot;
+    
+    /**
+     * Nobody holds a reference, the worker recycles the carrier.
+     */
+    boolean disposable;
+    
+    /**
+     * Parties that have not {@link #release()}d the carrier yet:
+     * the worker and, unless {@link #disposable}, the consumer.
+     */
+    private volatile int users;
+    
+    Carrier() {
+        this(new Slot());
+    }
+    
+    private Carrier(Slot slot) {
+        super(slot, Exception.class);
+        this.slot = slot;
+    }
+    
+    /**
+     * Prepare a fire-and-forget computation.
+     * 
+     * @param command computation to be performed
+     * @return this carrier
+     */
+    Carrier carry(Runnable command) {
+        reset(Exception.class);
+        slot.command = command;
+        slot.call = null;
+        disposable = true;
+        users = 1;
+        return this;
+    }
+    
+    /**
+     * Prepare a computation with a result.
+     * 
+     * @param <E> type of allowed checked exception
+     * @param catchable class which contains E
+     * @param call computation to be performed
+     * @param disposable {@code true} if nobody waits for the result
+     * @return this carrier
+     */
+    @SuppressWarnings("unchecked")
+    <E extends Exception> Carrier carry(Class<E> catchable,
+            Call<?,E> call, boolean disposable) {
+        reset((Class<Exception>) (Class<?>) catchable);
+        slot.command = null;
+        slot.call = call;
+        this.disposable = disposable;
+        users = disposable ? 1 : 2;
+        return this;
+    }
+    
+    /**
+     * Give up the carrier, called once by each of its {@link #users}.
+     * 
+     * <p>Only the last party may put the carrier back to the pool,
+     * so the consumer cannot reuse it while the worker still
+     * reads it, nor the other way round.</p>
+     * 
+     * @return {@code true} if nobody uses the carrier anymore
+     */
+    boolean release() {
+        return USERS.decrementAndGet(this) == 0;
+    }
+    
+    /**
+     * Forget the computation, so that it can be garbage-collected.
+     */
+    void clear() {
+        reset(Exception.class);
+        slot.command = null;
+        slot.call = null;
+    }
+    
+    /**
+     * Legacy computation carried by this carrier.
+     * 
+     * @return {@code null} unless carrying a {@link Runnable}
+     */
+    Runnable command() {
+        return slot.command;
+    }
+}
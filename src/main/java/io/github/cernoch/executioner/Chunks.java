@@ -0,0 +1,227 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2017 Radomír Černoch (radomir.cernoch at gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.cernoch.executioner;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Range of indexes processed in chunks by the submitter and pool workers.
+ * 
+ * <p>Every participant claims a chunk, processes it and measures the time
+ * per element. The next chunk is sized so that it takes about
+ * {@link #TARGET} nanoseconds, but it never takes more than a fair share
+ * of what remains. Cheap elements thus go in large chunks, expensive
+ * ones in small chunks that balance the load.</p>
+ * 
+ * <p>Chunk boundaries are multiples of the alignment, so that
+ * two threads do not write into the same cache line.</p>
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+abstract class Chunks implements Call<Void, RuntimeException> {
+    
+    /**
+     * Nanoseconds a chunk should take.
+     */
+    private static final long TARGET = 100_000L;
+    
+    /**
+     * First index.
+     */
+    private final long first;
+    
+    /**
+     * Index after the last one.
+     */
+    private final long last;
+    
+    /**
+     * Every chunk boundary is a multiple of this.
+     */
+    private final long align;
+    
+    /**
+     * Number of participants, including the submitter.
+     */
+    private final int participants;
+    
+    /**
+     * First unclaimed index.
+     */
+    private final AtomicLong next;
+    
+    /**
+     * Number of processed indexes, guarded by {@code this}.
+     */
+    private long processed = 0;
+    
+    /**
+     * The first exception thrown by {@link #process}.
+     */
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    /**
+     * Constructor for indexes with no alignment.
+     * 
+     * @param size number of indexes, starting from {@code 0}
+     * @param participants number of threads processing the chunks
+     */
+    Chunks(int size, int participants) {
+        this(0L, size, 1L, participants);
+    }
+    
+    /**
+     * Default constructor.
+     * 
+     * @param first first index
+     * @param last index after the last one
+     * @param align every chunk boundary is a multiple of this
+     * @param participants number of threads processing the chunks
+     */
+    Chunks(long first, long last, long align, int participants) {
+        this.first = first;
+        this.last = Math.max(first, last);
+        this.align = align;
+        this.participants = participants;
+        this.next = new AtomicLong(first);
+    }
+    
+    /**
+     * Process indexes from {@code from} (inclusive) to {@code to}.
+     * 
+     * @param from first index
+     * @param to index after the last one
+     * @throws Exception if an element fails
+     */
+    abstract void process(long from, long to) throws Exception;
+    
+    /**
+     * Is everything processed?
+     * 
+     * @return {@code true} if all claimed chunks have been processed
+     */
+    private boolean finished() {
+        return processed == last - first;
+    }
+    
+    /**
+     * End of a chunk, aligned and not too close to the {@link #last}.
+     * 
+     * @param from first index of the chunk
+     * @param chunk desired number of indexes
+     * @return index after the last one in the chunk
+     */
+    private long end(long from, long chunk) {
+        long to = from + chunk;
+        if (to >= last - align || to < from) {
+            return last;
+        }
+        return Math.floorDiv(to + align - 1, align) * align;
+    }
+
+    /**
+     * Process chunks until all are claimed or an element fails.
+     * 
+     * @return nothing
+     */
+    @Override
+    public Void call() {
+        long chunk = 1;
+        while (failure.get() == null) {
+            long from, to;
+            do {
+                from = next.get();
+                if (from >= last) {
+                    return null;
+                }
+                to = end(from, chunk);
+            } while (!next.compareAndSet(from, to));
+            
+            long started = System.nanoTime();
+            try {
+                process(from, to);
+            } catch (Throwable ex) {
+                failure.compareAndSet(null, ex);
+            }
+            long perElement = Math.max(1L,
+                    (System.nanoTime() - started) / (to - from));
+            
+            synchronized (this) {
+                processed += to - from;
+                if (finished() || failure.get() != null) {
+                    notifyAll();
+                }
+            }
+            
+            long fair = (last - next.get()) / (2 * participants);
+            chunk = Math.max(1L, Math.min(TARGET / perElement, fair));
+        }
+        return null;
+    }
+    
+    /**
+     * Process all chunks with the help of the pool's workers.
+     * 
+     * @param pool pool where the helpers are submitted
+     * @param catchable class of the checked exception of the elements
+     * @throws E the first exception thrown by an element
+     * @throws InterruptedException if the submitter is interrupted
+     */
+    <E extends Exception> void run(ThreadPool pool, Class<E> catchable)
+            throws E, InterruptedException {
+        
+        for (int i = 1; i < participants; i++) {
+            try {
+                pool.submit(RuntimeException.class, this);
+            } catch (IllegalStateException ex) {
+                // The queue is full, but we are not alone
+                break;
+            }
+        }
+        
+        call();
+        synchronized (this) {
+            while (!finished() && failure.get() == null) {
+                wait();
+            }
+        }
+        
+        Throwable thrown = failure.get();
+        if (thrown == null) {
+            return;
+        }
+        if (catchable.isInstance(thrown)) {
+            throw catchable.cast(thrown);
+        }
+        if (thrown instanceof RuntimeException) {
+            throw (RuntimeException) thrown;
+        }
+        if (thrown instanceof Error) {
+            throw (Error) thrown;
+        }
+        throw new IllegalArgumentException(
+                "Exception not of the declared class", thrown);
+    }
+}
@@ -0,0 +1,114 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2017 Radomír Černoch (radomir.cernoch at gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.cernoch.executioner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * {@link java.util.concurrent.ExecutorService} executing its tasks
+ * in the workers of a {@link ThreadPool}.
+ * 
+ * <p>Shutting down the view shuts down the pool, and vice versa.</p>
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ * @see ThreadPool#asExecutorService()
+ */
+class ExecutorView extends AbstractExecutorService {
+    
+    /**
+     * Pool executing the tasks.
+     */
+    private final ThreadPool pool;
+
+    /**
+     * Default constructor.
+     * 
+     * @param pool pool executing the tasks
+     */
+    ExecutorView(ThreadPool pool) {
+        this.pool = pool;
+    }
+    
+    @Override
+    public void execute(Runnable command) {
+        if (command == null) {
+            throw new NullPointerException();
+        }
+        try {
+            pool.execute(command);
+        } catch (IllegalStateException ex) {
+            throw new RejectedExecutionException(ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        pool.close();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> never = new ArrayList<>();
+        for (Futuroid<?,?> future : pool.shutdownNow()) {
+            if (future instanceof Carrier) {
+                Runnable command = ((Carrier) future).command();
+                if (command != null) {
+                    never.add(command);
+                }
+            }
+        }
+        return never;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return pool.exitting();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return pool.exitting() && !pool.working();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit)
+            throws InterruptedException {
+        if (timeout <= 0) {
+            return isTerminated();
+        }
+        
+        // Round up, the pool would take 0 milliseconds as "for ever"
+        long millis = unit.toMillis(timeout);
+        if (unit.toNanos(timeout) > MILLISECONDS.toNanos(millis)) {
+            millis++;
+        }
+        return pool.awaitTermination(millis);
+    }
+}
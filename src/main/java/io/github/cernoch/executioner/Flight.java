@@ -0,0 +1,259 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2017 Radomír Černoch (radomir.cernoch at gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.cernoch.executioner;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder events emitted by the pools.
+ * 
+ * <p>Events are switched on and off by the usual JFR settings, using
+ * their names, e.g. {@code io.github.cernoch.executioner.TaskStarted}.
+ * While no recording wants an event, emitting it costs a check of a flag
+ * or two and nothing is allocated.</p>
+ * 
+ * <p>Loading the first event class starts the recorder, which takes
+ * hundreds of milliseconds. Hence no event class is touched, until the
+ * recorder has been started by someone else.</p>
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+final class Flight {
+
+    private Flight() {
+    }
+    
+    private static final String PREFIX = "io.github.cernoch.executioner.";
+
+    @Name(PREFIX + "TaskEnqueued")
+    @Label("Task Enqueued")
+    @Category({"Executioner", "Task"})
+    @Description("Task has been put into the queue of a thread pool.")
+    @StackTrace(false)
+    static final class TaskEnqueued extends Event {
+        @Label("Task")
+        String task;
+    }
+
+    @Name(PREFIX + "TaskStarted")
+    @Label("Task Started")
+    @Category({"Executioner", "Task"})
+    @Description("Worker has taken a task from the queue.")
+    @StackTrace(false)
+    static final class TaskStarted extends Event {
+        @Label("Task")
+        String task;
+        
+        @Label("Queue Wait")
+        @Timespan(Timespan.NANOSECONDS)
+        long waited;
+    }
+
+    @Name(PREFIX + "TaskFinished")
+    @Label("Task Finished")
+    @Category({"Executioner", "Task"})
+    @Description("Worker has completed a task, the duration is its run-time.")
+    @StackTrace(false)
+    static final class TaskFinished extends Event {
+        @Label("Task")
+        String task;
+        
+        @Label("Queue Wait")
+        @Timespan(Timespan.NANOSECONDS)
+        long waited;
+        
+        @Label("Failed")
+        @Description("Task has thrown an exception.")
+        boolean failed;
+    }
+
+    @Name(PREFIX + "TaskCancelled")
+    @Label("Task Cancelled")
+    @Category({"Executioner", "Task"})
+    @Description("Queued task has been removed and will never run.")
+    @StackTrace(false)
+    static final class TaskCancelled extends Event {
+        @Label("Task")
+        String task;
+    }
+
+    @Name(PREFIX + "RaceStarted")
+    @Label("Race Started")
+    @Category({"Executioner", "Race"})
+    @Description("Spawn pool has submitted competing sub-tasks.")
+    static final class RaceStarted extends Event {
+        @Label("Sub-tasks")
+        int tasks;
+        
+        @Label("Time Out")
+        @Timespan(Timespan.MILLISECONDS)
+        long timeOut;
+    }
+
+    @Name(PREFIX + "RaceDecided")
+    @Label("Race Decided")
+    @Category({"Executioner", "Race"})
+    @Description("Spawn pool has chosen the result of competing sub-tasks.")
+    @StackTrace(false)
+    static final class RaceDecided extends Event {
+        @Label("Winner")
+        @Description("Index of the winning sub-task, or -1 if all failed.")
+        int winner;
+        
+        @Label("Losers")
+        int losers;
+        
+        @Label("Elapsed")
+        @Timespan(Timespan.MILLISECONDS)
+        long elapsed;
+    }
+
+    @Name(PREFIX + "TimeOut")
+    @Label("Time Out")
+    @Category("Executioner")
+    @Description("Timeout exception has been raised.")
+    static final class TimeOut extends Event {
+        @Label("Time Out")
+        @Timespan(Timespan.MILLISECONDS)
+        long timeOut;
+    }
+    
+    /**
+     * Instances are never committed, they only tell if an event is wanted.
+     */
+    private static final class Wanted {
+        static final TaskEnqueued ENQUEUED = new TaskEnqueued();
+        static final TaskStarted STARTED = new TaskStarted();
+        static final TaskFinished FINISHED = new TaskFinished();
+        static final TaskCancelled CANCELLED = new TaskCancelled();
+        static final RaceStarted RACE_STARTED = new RaceStarted();
+        static final RaceDecided RACE_DECIDED = new RaceDecided();
+        static final TimeOut TIME_OUT = new TimeOut();
+    }
+    
+    /**
+     * Is the recorder running, so that event classes are cheap to load?
+     * 
+     * @return {@code false} if no event can be wanted
+     */
+    private static boolean recorder() {
+        return FlightRecorder.isInitialized();
+    }
+
+    /**
+     * Does any recording want to see tasks being executed?
+     * 
+     * @return {@code true} if {@link #started} or {@link #finished}
+     *  would emit an event
+     */
+    static boolean executions() {
+        return recorder() && (Wanted.STARTED.isEnabled()
+                || Wanted.FINISHED.isEnabled());
+    }
+    
+    static void enqueued(Futuroid<?,?> future) {
+        if (recorder() && Wanted.ENQUEUED.isEnabled()) {
+            TaskEnqueued event = new TaskEnqueued();
+            event.task = future.task.getClass().getName();
+            event.commit();
+        }
+    }
+
+    /**
+     * Emit the start event and begin timing the run.
+     * 
+     * @param future task that is about to be executed
+     * @param waited nanoseconds spent in the queue
+     * @return argument for {@link #finished}, {@code null} if not wanted
+     */
+    static TaskFinished started(Futuroid<?,?> future, long waited) {
+        if (!recorder()) {
+            return null;
+        }
+        String task = future.task.getClass().getName();
+        if (Wanted.STARTED.isEnabled()) {
+            TaskStarted event = new TaskStarted();
+            event.task = task;
+            event.waited = waited;
+            event.commit();
+        }
+        if (Wanted.FINISHED.isEnabled()) {
+            TaskFinished event = new TaskFinished();
+            event.task = task;
+            event.waited = waited;
+            event.begin();
+            return event;
+        }
+        return null;
+    }
+    
+    static void finished(TaskFinished event, boolean failed) {
+        if (event != null) {
+            event.failed = failed;
+            event.commit();
+        }
+    }
+    
+    static void cancelled(Futuroid<?,?> future) {
+        if (recorder() && Wanted.CANCELLED.isEnabled()) {
+            TaskCancelled event = new TaskCancelled();
+            event.task = future.task.getClass().getName();
+            event.commit();
+        }
+    }
+    
+    static void raceStarted(int tasks, long timeOut) {
+        if (recorder() && Wanted.RACE_STARTED.isEnabled()) {
+            RaceStarted event = new RaceStarted();
+            event.tasks = tasks;
+            event.timeOut = timeOut;
+            event.commit();
+        }
+    }
+    
+    static void raceDecided(int winner, int losers, long elapsed) {
+        if (recorder() && Wanted.RACE_DECIDED.isEnabled()) {
+            RaceDecided event = new RaceDecided();
+            event.winner = winner;
+            event.losers = losers;
+            event.elapsed = elapsed;
+            event.commit();
+        }
+    }
+    
+    static void timeOut(long timeOut) {
+        if (recorder() && Wanted.TIME_OUT.isEnabled()) {
+            TimeOut event = new TimeOut();
+            event.timeOut = timeOut;
+            event.commit();
+        }
+    }
+}
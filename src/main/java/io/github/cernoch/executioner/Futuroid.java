@@ -24,6 +24,10 @@
 package io.github.cernoch.executioner;
 
 import io.github.cernoch.executioner.Future.Status;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 /**
  * Default implementation of a {@link Future}.
@@ -43,33 +47,37 @@ public class Futuroid<T, E extends Exception> implements Future<T, E> {
     public final Call<T,E> task;
 
     /**
-     * Synchronizer for modification of the state, usually {@code this}.
+     * Monitor notified of every change of the state, {@code null} if none.
+     * 
+     * <p>The state itself is changed by CAS, the monitor only lets
+     * somebody watch several futures at once. A {@link Futuroidy}
+     * is not locked, its checker is woken up instead.</p>
      */
     private final Object notified;
     
     /**
      * Class of the checked exception used for detection.
      */
-    private final Class<E> catchable;
+    private Class<E> catchable;
     
     /**
-     * Default constructor, which synchronizes on {@code this}.
+     * Default constructor, which notifies no monitor.
      * 
      * @param task task to be calculated
      * @param catchable class of the checked exception
      */
     Futuroid(Call<T,E> task, Class<E> catchable) {
         this.task = task;
-        this.notified = this;
+        this.notified = null;
         this.catchable = catchable;
     }
     
     /**
-     * Constructor which synchronizes on a supplied object.
+     * Constructor which notifies a supplied monitor of all changes.
      * 
      * @param task task to be calculated
      * @param catchable class of the checked exception
-     * @param notifier monitor used for synchronization
+     * @param notifier monitor notified of all changes of the state
      */
     Futuroid(Call<T,E> task,
             Class<E> catchable, Object notifier) {
@@ -83,7 +91,7 @@ public class Futuroid<T, E extends Exception> implements Future<T, E> {
      * Result of the computation.
      * 
      * <p>Initialized at {@code null}, may change after
-     * {@link #status} becomes {@link Status#DONE}.</p>
+     * {@link #state} becomes {@link #DONE}.</p>
      */
     private T result;
     
@@ -91,17 +99,26 @@ public class Futuroid<T, E extends Exception> implements Future<T, E> {
      * Exception thrown during the computation.
      * 
      * <p>Initialized at {@code null}, may change after
-     * {@link #status} becomes {@link Status#DONE}.</p>
+     * {@link #state} becomes {@link #DONE}.</p>
      */
     Throwable thrown;
     
     /**
      * Thread that performs the computation.
      * 
-     * <p>Is {@code null} if and only if {@link #status}
-     * is not {@link Status#RUNNING}.</p>
+     * <p>Is {@code null} unless the {@link #state}
+     * is {@link #RUNNING}.</p>
      */
-    private Thread worker;
+    private volatile Thread worker;
+    
+    /**
+     * Number of times the {@link #worker} has been interrupted
+     * on behalf of this task.
+     * 
+     * <p>Only the thread, which holds the {@link #INTERRUPTING}
+     * or {@link #COMPLETING} state, increments the counter.</p>
+     */
+    volatile int interrupts;
     
     /**
      * Holds information about runtime.
@@ -113,159 +130,640 @@ public class Futuroid<T, E extends Exception> implements Future<T, E> {
      */
     private long timing;
     
+    /*
+     * States of the calculation. STARTING, INTERRUPTING and COMPLETING
+     * are transient, the thread that has set them is about to leave them.
+     */
+    private static final int QUEUED = 0;
+    private static final int STARTING = 1;
+    private static final int RUNNING = 2;
+    private static final int INTERRUPTING = 3;
+    private static final int COMPLETING = 4;
+    private static final int DONE = 5;
+    
+    /**
+     * Current state of the calculation, changed only by CAS.
+     * 
+     * <p>Whoever moves the state to {@link #COMPLETING} writes
+     * the outcome and then sets {@link #DONE}, therefore the outcome
+     * is visible to anyone who reads {@link #DONE}.</p>
+     */
+    private volatile int state = QUEUED;
+    
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<Futuroid> STATE
+            = AtomicIntegerFieldUpdater.newUpdater(Futuroid.class, "state");
+    
+    /**
+     * Thread blocked in {@link #get()}, an entry in the {@link #waiters}.
+     */
+    private static final class Waiter {
+        
+        /**
+         * Thread to be unparked, {@code null} once it has left.
+         */
+        volatile Thread thread = Thread.currentThread();
+        
+        volatile Waiter next;
+    }
+    
+    /**
+     * Stack of threads waiting for the result.
+     */
+    private volatile Waiter waiters;
+    
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<Futuroid, Waiter> WAITERS
+            = AtomicReferenceFieldUpdater.newUpdater(
+                    Futuroid.class, Waiter.class, "waiters");
+    
+    /**
+     * Time ({@link System#nanoTime()}) when the task entered the queue.
+     */
+    long enqueued;
+    
+    /**
+     * Pool, whose queue contains this future, {@code null} if none.
+     */
+    ThreadPool owner;
+    
     /**
-     * Current status of the calculation.
+     * Value of {@link #deadline} for tasks with no deadline.
      */
-    private Status status = Status.QUEUED;
+    static final long NO_DEADLINE = Long.MAX_VALUE;
+    
+    /**
+     * Time (from {@link System#nanoTime()}) by which the task should start.
+     */
+    long deadline = NO_DEADLINE;
+    
+    /**
+     * Value of {@link #rank} for tasks in the plain FIFO queue.
+     */
+    static final long UNRANKED = Long.MAX_VALUE;
+    
+    /**
+     * Position in the owner's ranked queue, the lowest goes first.
+     * 
+     * <p>This is the {@link #deadline} or a virtual deadline
+     * derived from a priority.</p>
+     */
+    long rank = UNRANKED;
+    
+    /**
+     * Order of submission, which breaks ties between equal ranks.
+     */
+    long seq;
+    
+    /**
+     * Pending timer, which will submit this future, {@code null} if none.
+     */
+    volatile Wheel.Timer timer;
+    
+    /**
+     * Maximum running time in milliseconds, {@code 0} if unlimited.
+     */
+    long limit = 0;
+    
+    /*
+     * States of the {@link #slot}, i.e. the entry in the owner's queue.
+     */
+    private static final int IN_QUEUE = 0;
+    private static final int TAKEN = 1;
+    private static final int DEAD = 2;
+    private static final int BURIED = 3;
+    
+    /**
+     * State of the queue entry, changed only by CAS.
+     * 
+     * <p>The entry is either taken by a worker, or it is cancelled or
+     * {@linkplain #claim() claimed} while still queued (dead), which
+     * happens exactly once. Dead entries are then buried by whoever
+     * removes them from the queue.</p>
+     */
+    private volatile int slot = IN_QUEUE;
+    
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<Futuroid> SLOT
+            = AtomicIntegerFieldUpdater.newUpdater(Futuroid.class, "slot");
 
     @Override
     public Status status() {
-        synchronized (notified) {
-            return status;
+        switch (settled()) {
+            case QUEUED:
+                return Status.QUEUED;
+            case DONE:
+                return Status.DONE;
+            default:
+                return Status.RUNNING;
+        }
+    }
+    
+    /**
+     * Read the {@link #state}, wait out the transient ones.
+     * 
+     * @return {@link #QUEUED}, {@link #RUNNING} or {@link #DONE}
+     */
+    private int settled() {
+        int s;
+        while ((s = state) != QUEUED && s != RUNNING && s != DONE) {
+            Thread.onSpinWait();
         }
+        return s;
     }
     
     /**
      * Do the calculation.
      * 
-     * <p>This method automatically sets the {@link #status}.</p>
+     * <p>This method automatically sets the {@link #state}.</p>
      */
     void execute() {
-        assert status != Status.RUNNING;
-        if (status == Status.DONE) {
+        if (state != QUEUED || !started(Thread.currentThread())) {
             return;
         }
         
+        T value = null;
+        Throwable failure = null;
         try {
-            started(Thread.currentThread());
-            success(task.call());
+            value = task.call();
             
         } catch (Throwable ex) {
-            failed(ex);
+            failure = ex;
+        }
+        if (claimRunning()) {
+            publish(value, failure, System.currentTimeMillis() - timing);
         }
     }
     
     /**
-     * Transition from {@link Status#QUEUED} to {@link Status#RUNNING}.
+     * Transition from {@link #QUEUED} to {@link #RUNNING}.
      * 
      * @param worker thread that performs the computation
+     * @return {@code false} if the task is no longer queued
      */
-    void started(Thread worker) {
-        synchronized (notified) {
-            this.status = Status.RUNNING;
-            this.worker = worker;
-            notified.notifyAll();
-            this.timing = System.currentTimeMillis();
+    boolean started(Thread worker) {
+        if (!STATE.compareAndSet(this, QUEUED, STARTING)) {
+            return false;
         }
+        this.worker = worker;
+        this.timing = System.currentTimeMillis();
+        this.state = RUNNING;
+        signal();
+        return true;
     }
     
     /**
-     * Transition from {@link Status#RUNNING} to {@link Status#DONE}.
+     * Claim the right to finish a running task, called by its worker.
+     * 
+     * <p>If someone else finishes the task, this waits until they are done,
+     * so that their interrupt cannot hit the worker's next task.</p>
      * 
-     * @param result successful result of the calculation
+     * @return {@code false} if someone else has finished the task
      */
-    private void success(T result) {
-        synchronized (notified) {
-            this.timing = System.currentTimeMillis() - this.timing;
-            this.status = Status.DONE;
-            this.result = result;
-            this.worker = null;
-            notified.notifyAll();
+    private boolean claimRunning() {
+        while (true) {
+            int s = state;
+            if (s == RUNNING && STATE.compareAndSet(this, RUNNING, COMPLETING)) {
+                return true;
+            }
+            if (s == DONE) {
+                return false;
+            }
+            Thread.onSpinWait();
         }
     }
     
     /**
-     * Transition from {@link Status#RUNNING} to {@link Status#DONE}.
+     * Finish the task, the caller must have set {@link #COMPLETING}.
+     * 
+     * @param result successful result or {@code null}
+     * @param thrown exception to be thrown by {@link #get()}
+     * @param timing elapsed time in milliseconds
+     */
+    private void publish(T result, Throwable thrown, long timing) {
+        record(result, thrown, timing);
+        complete();
+    }
+    
+    /**
+     * Store the outcome, the caller must have set {@link #COMPLETING}.
      * 
-     * @param thrown exception thrown by the calculation
+     * @param result successful result or {@code null}
+     * @param thrown exception to be thrown by {@link #get()}
+     * @param timing elapsed time in milliseconds
      */
-    private void failed(Throwable thrown) {
-        synchronized (notified) {
-            this.timing = System.currentTimeMillis() - this.timing;
-            this.status = Status.DONE;
-            this.thrown = thrown;
-            this.worker = null;
-            notified.notifyAll();
+    private void record(T result, Throwable thrown, long timing) {
+        this.result = result;
+        this.thrown = thrown;
+        this.timing = timing;
+        this.worker = null;
+    }
+    
+    /**
+     * Transition from {@link #COMPLETING} to {@link #DONE}
+     * and wake up everybody waiting for the outcome.
+     */
+    private void complete() {
+        this.state = DONE;
+        
+        Waiter q;
+        while ((q = waiters) != null) {
+            if (WAITERS.compareAndSet(this, q, null)) {
+                for (; q != null; q = q.next) {
+                    Thread t = q.thread;
+                    if (t != null) {
+                        q.thread = null;
+                        LockSupport.unpark(t);
+                    }
+                }
+                break;
+            }
         }
+        signal();
+    }
+    
+    /**
+     * Wake up everybody waiting on the {@link #notified} monitor.
+     */
+    private void signal() {
+        if (notified instanceof Futuroidy) {
+            ((Futuroidy<?,?>) notified).changed();
+        } else if (notified != null) {
+            synchronized (notified) {
+                notified.notifyAll();
+            }
+        }
+    }
+    
+    /**
+     * Finish a {@link #QUEUED} or {@link #RUNNING} task.
+     * 
+     * <p>The worker of a running task is interrupted.</p>
+     * 
+     * @param thrown exception to be thrown by {@link #get()}
+     * @param running {@code false} to finish only a queued task
+     * @return state in which the task has been finished,
+     *  {@link #DONE} if it had been finished before
+     */
+    private int abort(Throwable thrown, boolean running) {
+        while (true) {
+            int s = state;
+            if (s == QUEUED) {
+                if (STATE.compareAndSet(this, QUEUED, COMPLETING)) {
+                    publish(null, thrown, 0);
+                    discarded(thrown);
+                    return QUEUED;
+                }
+            } else if (s == RUNNING && running) {
+                if (STATE.compareAndSet(this, RUNNING, COMPLETING)) {
+                    interrupts++;
+                    worker.interrupt();
+                    publish(null, thrown, System.currentTimeMillis() - timing);
+                    return RUNNING;
+                }
+            } else if (s == DONE || (s == RUNNING && !running)) {
+                return DONE;
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+    
+    /**
+     * Called once the task has been finished without ever running,
+     * i.e. it has been cancelled or dropped while queued.
+     * 
+     * <p>The task is already {@link #DONE}, the default
+     * implementation does nothing.</p>
+     * 
+     * @param thrown exception to be thrown by {@link #get()}
+     */
+    void discarded(Throwable thrown) {
     }
     
     @Override
     public long cpuTime() {
-        synchronized (notified) {
-            switch (status) {
-                case DONE:
-                    return timing;
-
-                case RUNNING:
-                    return System.currentTimeMillis() - this.timing;
-
-                default:
-                    throw new NotStartedYet();
-            }
+        switch (settled()) {
+            case DONE:
+                return timing;
+                
+            case QUEUED:
+                throw new NotStartedYet();
+                
+            default:
+                return System.currentTimeMillis() - this.timing;
         }
     }
 
     @Override
     public void interrupt() {
-        synchronized (notified) {
-            switch (status) {
-                case QUEUED:
-                    this.timing = 0;
-                    this.thrown = new InterruptedException();
-                    this.status = Status.DONE;
-                    notified.notifyAll();
-                    break;
-                    
-                case RUNNING:
-                    worker.interrupt();
-                    break;
+        while (true) {
+            int s = state;
+            if (s == QUEUED) {
+                if (abort(new InterruptedException(), false) == QUEUED) {
+                    abandoned();
+                }
+                return;
             }
+            if (s == DONE) {
+                return;
+            }
+            if (s == RUNNING
+                    && STATE.compareAndSet(this, RUNNING, INTERRUPTING)) {
+                interrupts++;
+                worker.interrupt();
+                state = RUNNING;
+                return;
+            }
+            Thread.onSpinWait();
+        }
+    }
+    
+    /**
+     * Cancel a {@link Status#QUEUED} task, which will never be executed.
+     * 
+     * @param cause reason why the task has been dropped, may be {@code null}
+     */
+    void dropped(Exception cause) {
+        Throwable thrown = new InterruptedException();
+        if (cause != null) {
+            thrown.initCause(cause);
+        }
+        abort(thrown, false);
+    }
+    
+    /**
+     * Finish a {@link Status#QUEUED} task without executing it.
+     * 
+     * @param thrown exception to be thrown by {@link #get()}
+     */
+    void aborted(Throwable thrown) {
+        abort(thrown, false);
+    }
+    
+    /**
+     * Finish a task, whose running time has exceeded the {@link #limit}.
+     * 
+     * <p>The worker is interrupted and {@link #get()} throws
+     * an {@link InterruptedException} caused by a {@link TimeoutException},
+     * whose cause is a {@link HereWeWere} with the worker's stack.</p>
+     */
+    void timedOut() {
+        TimeoutException cause = new TimeoutException(limit);
+        Throwable thrown = new InterruptedException();
+        thrown.initCause(cause);
+        Thread running = worker;
+        if (running != null) {
+            cause.initCause(new HereWeWere(running.getStackTrace()));
         }
+        abort(thrown, true);
     }
     
     @Override
     public void cancel() {
-        synchronized (notified) {
-            if (worker != null) {
-                worker.interrupt();
-                worker = null;
+        if (abort(new InterruptedException(), true) == QUEUED) {
+            abandoned();
+        }
+    }
+    
+    /**
+     * Tell the {@link #owner} that a queued entry is dead,
+     * unless a worker has already taken it from the queue.
+     * A pending {@link #timer} is cancelled as well.
+     */
+    private void abandoned() {
+        Wheel.Timer pending = timer;
+        if (pending != null) {
+            pending.cancel();
+        }
+        ThreadPool pool = owner;
+        if (pool != null && SLOT.compareAndSet(this, IN_QUEUE, DEAD)) {
+            pool.abandoned(this);
+        }
+    }
+    
+    /**
+     * Claim a live queue entry for execution.
+     * 
+     * @return {@code false} if the entry is dead
+     */
+    boolean take() {
+        return SLOT.compareAndSet(this, IN_QUEUE, TAKEN);
+    }
+    
+    /**
+     * Claim a live queue entry for a waiting worker, which executes it
+     * without removing it from the queue.
+     * 
+     * <p>The entry becomes dead, so it is removed like a cancelled one.</p>
+     * 
+     * @return {@code false} if the entry is not live
+     */
+    boolean claim() {
+        return SLOT.compareAndSet(this, IN_QUEUE, DEAD);
+    }
+    
+    /**
+     * Claim a dead queue entry for removal.
+     * 
+     * @return {@code false} if it is not dead or someone else has claimed it
+     */
+    boolean bury() {
+        return SLOT.compareAndSet(this, DEAD, BURIED);
+    }
+    
+    /**
+     * Is this a dead entry, claimed or not?
+     * 
+     * @return {@code true} if cancelled or claimed while in the queue
+     */
+    boolean dead() {
+        return slot >= DEAD;
+    }
+    
+    /**
+     * Return to the {@link Status#QUEUED} state, so that the instance
+     * can carry another computation.
+     * 
+     * <p>Nobody may use the future at this moment.</p>
+     * 
+     * @param catchable class of the checked exception
+     */
+    void reset(Class<E> catchable) {
+        this.catchable = catchable;
+        this.result = null;
+        this.thrown = null;
+        this.worker = null;
+        this.interrupts = 0;
+        this.timing = 0;
+        this.enqueued = 0;
+        this.owner = null;
+        this.deadline = NO_DEADLINE;
+        this.rank = UNRANKED;
+        this.timer = null;
+        this.limit = 0;
+        this.slot = IN_QUEUE;
+        this.waiters = null;
+        this.state = QUEUED;
+    }
+    
+    /**
+     * Park until the task is {@link Status#DONE}, or until someone else
+     * unparks the current thread.
+     * 
+     * <p>Returns immediately if the thread is interrupted,
+     * but leaves the interrupt flag untouched.</p>
+     */
+    void park() {
+        if (state == DONE) {
+            return;
+        }
+        Waiter node = new Waiter();
+        do {
+            node.next = waiters;
+        } while (!WAITERS.compareAndSet(this, node.next, node));
+        
+        if (state != DONE) {
+            LockSupport.park(this);
+        }
+        removeWaiter(node);
+    }
+    
+    /**
+     * Park in the {@link #waiters} stack until the task is done.
+     * 
+     * @param timed {@code false} to wait for ever
+     * @param nanos maximum time to wait if timed
+     * @return the final state, not {@link #DONE} if the time ran out
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    private int awaitDone(boolean timed, long nanos)
+            throws InterruptedException {
+        
+        long deadline = timed ? System.nanoTime() + nanos : 0L;
+        Waiter node = null;
+        boolean pushed = false;
+        while (true) {
+            if (Thread.interrupted()) {
+                removeWaiter(node);
+                throw new InterruptedException();
+            }
+            
+            int s = state;
+            if (s == DONE) {
+                if (node != null) {
+                    node.thread = null;
+                }
+                return s;
+            } else if (s == COMPLETING) {
+                // The outcome is being stored, which takes only a moment
+                if (timed && deadline - System.nanoTime() <= 0) {
+                    removeWaiter(node);
+                    return s;
+                }
+                Thread.yield();
+            } else if (node == null) {
+                if (timed && nanos <= 0) {
+                    return s;
+                }
+                node = new Waiter();
+            } else if (!pushed) {
+                node.next = waiters;
+                pushed = WAITERS.compareAndSet(this, node.next, node);
+            } else if (timed) {
+                nanos = deadline - System.nanoTime();
+                if (nanos <= 0) {
+                    removeWaiter(node);
+                    return state;
+                }
+                LockSupport.parkNanos(this, nanos);
+            } else {
+                LockSupport.park(this);
             }
-            if (status != Status.DONE) {
-                this.timing = System.currentTimeMillis() - this.timing;            
-                this.thrown = new InterruptedException();
+        }
+    }
+    
+    /**
+     * Unlink a waiter that has timed out or has been interrupted,
+     * together with any other such waiters.
+     * 
+     * @param node waiter that has left, may be {@code null}
+     */
+    private void removeWaiter(Waiter node) {
+        if (node == null) {
+            return;
+        }
+        node.thread = null;
+        retry:
+        while (true) {
+            Waiter pred = null;
+            for (Waiter q = waiters, next; q != null; q = next) {
+                next = q.next;
+                if (q.thread != null) {
+                    pred = q;
+                } else if (pred != null) {
+                    pred.next = next;
+                    if (pred.thread == null) {
+                        continue retry;
+                    }
+                } else if (!WAITERS.compareAndSet(this, q, next)) {
+                    continue retry;
+                }
             }
-            this.status = Status.DONE;
-            notified.notifyAll();
+            return;
+        }
+    }
+    
+    /**
+     * Let a ranked task, which is about to be waited for, go first.
+     */
+    private void inherit() {
+        ThreadPool pool = owner;
+        if (pool != null && rank != UNRANKED && state == QUEUED) {
+            pool.boost(this);
         }
     }
     
     @Override
     public T get() throws InterruptedException, E {
-        synchronized (notified) {
-            
-            while (status != Status.DONE) {
-                notified.wait();
+        if (state != DONE) {
+            inherit();
+            awaitDone(false, 0L);
+        }
+        return report();
+    }
+    
+    /**
+     * Return the result or throw the exception of a finished task.
+     * 
+     * @return result of the computation
+     * @throws InterruptedException if the task has been cancelled
+     * @throws E if the computation has thrown it
+     */
+    @SuppressWarnings("unchecked")
+    private T report() throws InterruptedException, E {
+        if (thrown != null) {
+            if (thrown instanceof RuntimeException) {
+                throw (RuntimeException) thrown;
             }
 
-            if (thrown != null) {
-                if (thrown instanceof RuntimeException) {
-                    throw (RuntimeException) thrown;
-                }
-
-                if (catchable.isAssignableFrom(thrown.getClass())) {
-                    throw (E) thrown;
-                }
+            if (catchable.isAssignableFrom(thrown.getClass())) {
+                throw (E) thrown;
+            }
 
-                if (thrown instanceof Error) {
-                    throw (Error) thrown;
-                }
+            if (thrown instanceof InterruptedException) {
+                throw (InterruptedException) thrown;
+            }
 
-                throw new IllegalArgumentException(
-                        "Exception not of the declared class", thrown);
+            if (thrown instanceof Error) {
+                throw (Error) thrown;
             }
 
-            return result;
+            throw new IllegalArgumentException(
+                    "Exception not of the declared class", thrown);
         }
+
+        return result;
     }
     
     @Override
@@ -273,27 +771,22 @@ public class Futuroid<T, E extends Exception> implements Future<T, E> {
             throws InterruptedException,
                 TimeoutException, E {
         
-        synchronized (notified) {
-            long remains = timeOut;
-            long started = System.currentTimeMillis();
-
-            while (status != Status.DONE && remains > 0) {
-                notified.wait(remains);
-
-                remains = timeOut + started
-                        - System.currentTimeMillis();
-            }
-
-            if (status != Status.DONE) {
-                if (worker != null) {
-                    throw new TimeoutException(timeOut,
-                            worker.getStackTrace(), 3, 1);
-                } else {
-                    throw new TimeoutException(timeOut);
-                }
+        int s = state;
+        if (s != DONE) {
+            inherit();
+            s = awaitDone(true, MILLISECONDS.toNanos(timeOut));
+        }
+        
+        if (s != DONE) {
+            Thread running = worker;
+            if (running != null) {
+                throw new TimeoutException(timeOut,
+                        running.getStackTrace(), 3, 1);
+            } else {
+                throw new TimeoutException(timeOut);
             }
-
-            return get();
         }
+        
+        return report();
     }
 }
@@ -25,6 +25,9 @@ package io.github.cernoch.executioner;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 /**
  * {@link Future} for a spawned call.
@@ -48,7 +51,7 @@ public class Futuroidy<T, E extends Exception> implements Future<T, E> {
     /**
      * Number of milliseconds before all sub-tasks are interrupted.
      */
-    private final long timeOut;
+    final long timeOut;
     
     /**
      * Time, when this task was created.
@@ -77,6 +80,55 @@ public class Futuroidy<T, E extends Exception> implements Future<T, E> {
      */
     private Status status = Status.QUEUED;
 
+    /**
+     * Number of state changes of the sub-tasks so far.
+     */
+    private final AtomicLong changes = new AtomicLong();
+    
+    /**
+     * Thread of the checker, which parks until a sub-task changes.
+     */
+    private volatile Thread checker;
+    
+    /**
+     * Called by a sub-task whenever its state changes.
+     * 
+     * <p>Sub-tasks never enter the monitor of this future,
+     * they only wake up the checker.</p>
+     */
+    void changed() {
+        changes.incrementAndGet();
+        Thread t = checker;
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+    }
+    
+    /**
+     * Park the checker until a sub-task changes or the time runs out.
+     * 
+     * @param seen number of {@link #changes} before the last check
+     * @param timeOut number of milliseconds to wait, {@code 0} for ever
+     * @throws InterruptedException if the checker is interrupted
+     */
+    private void await(long seen, long timeOut) throws InterruptedException {
+        long deadline = System.nanoTime() + MILLISECONDS.toNanos(timeOut);
+        while (changes.get() == seen) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (timeOut <= 0) {
+                LockSupport.park(this);
+            } else {
+                long remains = deadline - System.nanoTime();
+                if (remains <= 0) {
+                    return;
+                }
+                LockSupport.parkNanos(this, remains);
+            }
+        }
+    }
+    
     /**
      * Maximum time before a sub-task has no chance to become the {@link #best}.
      * 
@@ -179,6 +231,16 @@ public class Futuroidy<T, E extends Exception> implements Future<T, E> {
         return Timing.from(cpuTimes);
     }
 
+    /**
+     * Report the chosen {@link #best} to the {@link Flight} recorder.
+     */
+    private void decided() {
+        int winner = best == null ? -1 : tasks.indexOf(best);
+        int losers = best == null ? tasks.size() : tasks.size() - 1;
+        Flight.raceDecided(winner, losers,
+                System.currentTimeMillis() - started);
+    }
+
     /**
      * Assigns {@link #best} only once, depending on which sub-task ends first.
      * 
@@ -189,62 +251,72 @@ public class Futuroidy<T, E extends Exception> implements Future<T, E> {
 
         @Override
         public Void call() throws InterruptedException {
-            synchronized (Futuroidy.this) {
-
+            checker = Thread.currentThread();
+            try {
                 boolean allDone = false;
                 while (!allDone) {
-                    allDone = true;
+                    long seen = changes.get();
+                    long nextEvent;
                     
-                    for (Futuroid<T, E> fut : tasks) {
+                    synchronized (Futuroidy.this) {
+                        allDone = true;
+
+                        for (Futuroid<T, E> fut : tasks) {
 
-                        if (fut.status() == Status.RUNNING) {
-                            if (status != Status.RUNNING) {
-                                status = Status.RUNNING;
-                                Futuroidy.this.notifyAll();
+                            if (fut.status() == Status.RUNNING) {
+                                if (status != Status.RUNNING) {
+                                    status = Status.RUNNING;
+                                    Futuroidy.this.notifyAll();
+                                }
                             }
-                        }
-                        if (fut.status() == Status.DONE && fut.thrown == null) {
-                            if (best == null || fut.cpuTime() < timeOut()) {
-                                best = fut;
+                            if (fut.status() == Status.DONE && fut.thrown == null) {
+                                if (best == null || fut.cpuTime() < timeOut()) {
+                                    best = fut;
+                                }
                             }
                         }
-                    }
-                    
-                    // time to the next expected event
-                    long nextEvent = timeOut();
-                    
-                    for (Futuroid<T, E> future : tasks) {
-
-                        if (future.status() == Status.RUNNING) {
-                            long remains = timeOut() - future.cpuTime();
-                            
-                            if (remains <= 0) {
-                                if (timeOut > 0 || best != null) {
-                                    // value in "remains" is valid
-                                    future.cancel();
-                                    continue;
+
+                        // time to the next expected event
+                        nextEvent = timeOut();
+
+                        for (Futuroid<T, E> future : tasks) {
+
+                            if (future.status() == Status.RUNNING) {
+                                long remains = timeOut() - future.cpuTime();
+
+                                if (remains <= 0) {
+                                    if (timeOut > 0 || best != null) {
+                                        // value in "remains" is valid
+                                        future.cancel();
+                                        continue;
+                                    }
+                                } else if (nextEvent > remains) {
+                                    nextEvent = remains;
                                 }
-                            } else if (nextEvent > remains) {
-                                nextEvent = remains;
                             }
-                        }
-                        
-                        if (future.status() != Status.DONE) {
-                            // the "continue" above is necessary
-                            // if cuture.cancel() was called,
-                            // its status will become DONE
-                            allDone = false;
+
+                            if (future.status() != Status.DONE) {
+                                // the "continue" above is necessary
+                                // if cuture.cancel() was called,
+                                // its status will become DONE
+                                allDone = false;
+                            }
                         }
                     }
                     
                     if (!allDone) {
-                        Futuroidy.this.wait(nextEvent);
+                        await(seen, nextEvent);
                     }
                 }
+            } finally {
+                checker = null;
+            }
+            
+            synchronized (Futuroidy.this) {
+                decided();
                 status = Status.DONE;
                 Futuroidy.this.notifyAll();
                 return null;
-
             }
         }
     }
@@ -259,58 +331,68 @@ public class Futuroidy<T, E extends Exception> implements Future<T, E> {
 
         @Override
         public Void call() throws InterruptedException {
-            synchronized (Futuroidy.this) {
-
+            checker = Thread.currentThread();
+            try {
                 boolean someRuns = false;
                 while (!someRuns) {
-                    someRuns = false;
+                    long seen = changes.get();
+                    long nextEvent;
                     
-                    for (Futuroid<T, E> fut : tasks) {
+                    synchronized (Futuroidy.this) {
+                        someRuns = false;
 
-                        if (fut.status() == Status.RUNNING) {
-                            if (status != Status.RUNNING) {
-                                status = Status.RUNNING;
-                                Futuroidy.this.notifyAll();
+                        for (Futuroid<T, E> fut : tasks) {
+
+                            if (fut.status() == Status.RUNNING) {
+                                if (status != Status.RUNNING) {
+                                    status = Status.RUNNING;
+                                    Futuroidy.this.notifyAll();
+                                }
                             }
-                        }
-                        
-                        if (fut.status() == Status.DONE) {
-                            someRuns = true;
-                            
-                            if (fut.thrown == null) {
-                                best = fut;
+
+                            if (fut.status() == Status.DONE) {
+                                someRuns = true;
+
+                                if (fut.thrown == null) {
+                                    best = fut;
+                                }
                             }
                         }
-                    }
-                    
-                    // time to the next expected event
-                    long nextEvent = timeOut;
-                    
-                    for (Futuroid<T, E> future : tasks) {
 
-                        if (future.status() == Status.RUNNING) {
-                            if (timeOut > 0) {
-                                long remains = timeOut - future.cpuTime();
-                                
-                                if (remains <= 0) {
-                                    future.cancel();
-                                    
-                                } else if (nextEvent > remains) {
-                                    nextEvent = remains;
+                        // time to the next expected event
+                        nextEvent = timeOut;
+
+                        for (Futuroid<T, E> future : tasks) {
+
+                            if (future.status() == Status.RUNNING) {
+                                if (timeOut > 0) {
+                                    long remains = timeOut - future.cpuTime();
+
+                                    if (remains <= 0) {
+                                        future.cancel();
+
+                                    } else if (nextEvent > remains) {
+                                        nextEvent = remains;
+                                    }
                                 }
                             }
                         }
                     }
                     
                     if (!someRuns) {
-                        Futuroidy.this.wait(nextEvent);
+                        await(seen, nextEvent);
                     }
                 }
-                
+            } finally {
+                checker = null;
+            }
+            
+            synchronized (Futuroidy.this) {
                 for (Futuroid<T, E> future : tasks) {
                     future.cancel();
                 }                
                 
+                decided();
                 status = Status.DONE;
                 Futuroidy.this.notifyAll();
                 return null;
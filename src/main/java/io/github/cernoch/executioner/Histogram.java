@@ -0,0 +1,274 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2017 Radomír Černoch (radomir.cernoch at gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.cernoch.executioner;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of non-negative values with a fixed memory.
+ * 
+ * <p>Values are counted in logarithmic buckets. Each power of two is split
+ * into {@value #SUB_BUCKETS} linear sub-buckets, so a reported quantile
+ * differs by at most 1/{@value #SUB_BUCKETS} from the recorded value.
+ * The histogram takes {@value #BUCKETS} counters, whatever the number
+ * or magnitude of the recorded values.</p>
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ * @see ThreadPool#queueWait()
+ * @see ThreadPool#runTime()
+ */
+public class Histogram {
+    
+    /**
+     * Bits of the value that select a sub-bucket.
+     */
+    private static final int SUB_BITS = 4;
+    
+    /**
+     * Number of sub-buckets in each power of two.
+     */
+    public static final int SUB_BUCKETS = 1 << SUB_BITS;
+    
+    /**
+     * Number of buckets covering all non-negative {@code long}s.
+     */
+    public static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+    
+    /**
+     * Number of values in each bucket.
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    
+    /**
+     * Create an empty histogram.
+     */
+    public Histogram() {
+    }
+    
+    /**
+     * Index of the bucket containing a value.
+     * 
+     * @param value non-negative number
+     * @return number from {@code 0} to {@link #BUCKETS}{@code -1}
+     */
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) Math.max(0L, value);
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - SUB_BITS;
+        return (shift + 1) * SUB_BUCKETS
+                + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+    
+    /**
+     * Smallest value in a bucket.
+     * 
+     * @param bucket index of the bucket
+     * @return non-negative number
+     */
+    static long lowest(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+    }
+    
+    /**
+     * Largest value in a bucket.
+     * 
+     * @param bucket index of the bucket
+     * @return non-negative number
+     */
+    static long highest(int bucket) {
+        if (bucket + 1 == BUCKETS) {
+            return Long.MAX_VALUE;
+        }
+        return lowest(bucket + 1) - 1;
+    }
+
+    /**
+     * Count a value, negative values are counted as {@code 0}.
+     * 
+     * <p>This method neither locks nor allocates.</p>
+     * 
+     * @param value recorded value
+     */
+    public void record(long value) {
+        counts.incrementAndGet(bucket(value));
+    }
+    
+    /**
+     * Copy the counts recorded so far.
+     * 
+     * @return a non-{@code null} instance
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+        }
+        return new Snapshot(copy);
+    }
+    
+    /**
+     * Copy the counts recorded so far and start counting from zero.
+     * 
+     * <p>Every value recorded concurrently is included either
+     * in the returned snapshot, or in the next one.</p>
+     * 
+     * @return a non-{@code null} instance
+     */
+    public Snapshot reset() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            if (counts.get(i) != 0) {
+                copy[i] = counts.getAndSet(i, 0L);
+            }
+        }
+        return new Snapshot(copy);
+    }
+    
+    @Override
+    public String toString() {
+        return snapshot().toString();
+    }
+    
+    /**
+     * Immutable copy of the counts in a {@link Histogram}.
+     */
+    public static class Snapshot {
+        
+        /**
+         * Number of values in each bucket.
+         */
+        private final long[] counts;
+        
+        /**
+         * Number of all recorded values.
+         */
+        public final long count;
+        
+        /**
+         * Snapshot of no values.
+         */
+        public static final Snapshot EMPTY = new Snapshot(new long[BUCKETS]);
+
+        /**
+         * Default constructor takes ownership of the array.
+         * 
+         * @param counts number of values in each bucket
+         */
+        private Snapshot(long[] counts) {
+            this.counts = counts;
+            
+            long sum = 0L;
+            for (long c : counts) {
+                sum += c;
+            }
+            this.count = sum;
+        }
+        
+        /**
+         * Combine values from two snapshots, e.g. of different pools.
+         * 
+         * @param other a non-{@code null} snapshot
+         * @return a new non-{@code null} snapshot
+         */
+        public Snapshot merge(Snapshot other) {
+            long[] sum = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                sum[i] = counts[i] + other.counts[i];
+            }
+            return new Snapshot(sum);
+        }
+        
+        /**
+         * Value, below which is a given fraction of recorded values.
+         * 
+         * @param quantile number from {@code 0.0} to {@code 1.0},
+         *  e.g. {@code 0.99} for the 99th percentile
+         * @return upper bound of the bucket containing the quantile,
+         *  or {@code 0} if no values have been recorded
+         */
+        public long quantile(double quantile) {
+            if (count == 0) {
+                return 0L;
+            }
+            long rank = (long) Math.ceil(quantile * count);
+            rank = Math.max(1L, Math.min(count, rank));
+            
+            long seen = 0L;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return highest(i);
+                }
+            }
+            return highest(BUCKETS - 1);
+        }
+        
+        /**
+         * Largest recorded value.
+         * 
+         * @return upper bound of the highest non-empty bucket,
+         *  or {@code 0} if no values have been recorded
+         */
+        public long max() {
+            for (int i = BUCKETS - 1; i >= 0; i--) {
+                if (counts[i] != 0) {
+                    return highest(i);
+                }
+            }
+            return 0L;
+        }
+        
+        /**
+         * Approximate mean of the recorded values.
+         * 
+         * @return mean of the bucket midpoints,
+         *  or {@code 0} if no values have been recorded
+         */
+        public double mean() {
+            if (count == 0) {
+                return 0.0;
+            }
+            double sum = 0.0;
+            for (int i = 0; i < BUCKETS; i++) {
+                if (counts[i] != 0) {
+                    sum += counts[i] * (lowest(i) / 2.0 + highest(i) / 2.0);
+                }
+            }
+            return sum / count;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("n=%d, p50=%d, p99=%d, p99.9=%d, max=%d",
+                    count, quantile(0.5), quantile(0.99),
+                    quantile(0.999), max());
+        }
+    }
+}
@@ -0,0 +1,271 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2017 Radomír Černoch (radomir.cernoch at gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.cernoch.executioner;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Executes tasks with the same key one after another, in the order
+ * of submission, while tasks with different keys run in parallel.
+ * 
+ * <p>Tasks with the same key form a lane. At most one task of each lane
+ * is in the underlying {@link ThreadPool}; the next one is submitted only
+ * after it has finished. No worker ever waits for a lock of a key.
+ * A lane exists only while it has pending tasks, so the memory is
+ * proportional to the number of busy keys, not to all keys ever seen.</p>
+ * 
+ * <pre>
+KeyedPool&lt;String&gt; accounts = new KeyedPool&lt;&gt;(new ThreadPool(8, true));
+accounts.submit("alice", IOException.class, () -&gt; deposit("alice", 10));
+accounts.submit("alice", IOException.class, () -&gt; withdraw("alice", 5));</pre>
+ *
+ * @param <K> type of the keys, must have proper equals and hashCode
+ * 
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class KeyedPool<K> {
+    
+    /**
+     * Pool that executes the tasks.
+     */
+    private final ThreadPool pool;
+    
+    /**
+     * Lanes of all keys with pending tasks.
+     */
+    private final ConcurrentHashMap<K, Lane> lanes = new ConcurrentHashMap<>();
+
+    /**
+     * Default constructor.
+     * 
+     * @param pool pool that executes the tasks, may be shared
+     */
+    public KeyedPool(ThreadPool pool) {
+        this.pool = pool;
+    }
+    
+    /**
+     * Submit a computation which runs after all earlier ones with the key.
+     * 
+     * @param <T> type of the returned value
+     * @param <E> type of allowed checked exception
+     * @param key key of the lane, not {@code null}
+     * @param catchable class which contains E
+     * @param task computation to be performed
+     * @return a future that holds the computation result
+     * @throws IllegalStateException if the pool does not accept the task
+     * @see ThreadPool#submit(Class, Call)
+     */
+    public <T,E extends Exception> Futuroid<T,E> submit(
+            K key, Class<E> catchable, Call<T,E> task) {
+        
+        Futuroid<T,E> fut = new Futuroid<>(task, catchable);
+        boolean[] first = {false};
+        Lane lane = lanes.compute(key, (k, old) -> {
+            Lane neu = old != null ? old : new Lane(k);
+            neu.tasks.add(fut);
+            first[0] = neu.pending++ == 0;
+            return neu;
+        });
+        
+        // Only the first task of an idle lane starts it
+        if (first[0]) {
+            try {
+                pool.submit(new Runner(lane));
+            } catch (IllegalStateException ex) {
+                lane.abort(null);
+                throw ex;
+            }
+        }
+        return fut;
+    }
+    
+    /**
+     * Number of keys that have pending tasks.
+     * 
+     * @return non-negative number
+     */
+    public int keys() {
+        return lanes.size();
+    }
+    
+    /**
+     * Pending tasks of a single key, executing the oldest one at a time.
+     */
+    private class Lane {
+        
+        /**
+         * Key of this lane.
+         */
+        private final K key;
+        
+        /**
+         * Pending tasks, the head is the one submitted to the {@link #pool}.
+         */
+        private final Queue<Futuroid<?,?>> tasks
+                = new ConcurrentLinkedQueue<>();
+        
+        /**
+         * Number of {@link #tasks}, guarded by the lock of the key
+         * in {@link #lanes}.
+         */
+        private int pending = 0;
+
+        /**
+         * Default constructor.
+         * 
+         * @param key key of this lane
+         */
+        private Lane(K key) {
+            this.key = key;
+        }
+        
+        /**
+         * Remove the head and forget the lane if it has become empty.
+         * 
+         * @return {@code true} if there are more tasks
+         */
+        private boolean advance() {
+            return lanes.compute(key, (k, lane) -> {
+                tasks.poll();
+                return --pending == 0 ? null : lane;
+            }) != null;
+        }
+        
+        /**
+         * Cancel all tasks, because the pool refuses or drops the lane.
+         * 
+         * <p>Calling this again does nothing, the lane is empty.</p>
+         * 
+         * @param cause reason why the tasks are dropped, may be {@code null}
+         */
+        private void abort(Exception cause) {
+            Futuroid<?,?> head;
+            while ((head = tasks.peek()) != null) {
+                head.dropped(cause);
+                if (!advance()) {
+                    return;
+                }
+            }
+        }
+        
+        /**
+         * Execute tasks one by one, while each next runner is executed
+         * by the caller (the pool's {@link ThreadPool.Overflow#CALLER_RUNS}
+         * policy), so that a long lane does not grow the stack.
+         */
+        private void run() {
+            do {
+                tasks.peek().execute();
+            } while (advance() && resubmit());
+        }
+        
+        /**
+         * Submit a runner for the next task.
+         * 
+         * @return {@code true} if the runner has been skipped,
+         *  because the current thread should run the task itself
+         */
+        private boolean resubmit() {
+            Runner next = new Runner(this);
+            next.step.submitter = Thread.currentThread();
+            try {
+                pool.submit(next);
+            } catch (IllegalStateException ex) {
+                abort(null);
+                return false;
+            }
+            next.step.submitter = null;
+            return next.step.inline;
+        }
+    }
+    
+    /**
+     * Body of a {@link Runner}.
+     */
+    private class Step implements Call<Void, RuntimeException> {
+        
+        private final Lane lane;
+        
+        /**
+         * Thread which is submitting the runner, {@code null} afterwards.
+         * 
+         * <p>Only the submitter itself can find its own thread here.</p>
+         */
+        private Thread submitter;
+        
+        /**
+         * The runner has been executed by its submitter,
+         * which has to run the lane instead.
+         */
+        private boolean inline = false;
+        
+        private Step(Lane lane) {
+            this.lane = lane;
+        }
+        
+        @Override
+        public Void call() {
+            if (Thread.currentThread() == submitter) {
+                inline = true;
+            } else {
+                lane.run();
+            }
+            return null;
+        }
+    }
+    
+    /**
+     * Task which runs a lane in the {@link #pool}.
+     * 
+     * <p>If the pool drops the runner, i.e. it is cancelled, expired,
+     * rejected on shutdown or dropped from a full queue,
+     * the whole lane is dropped with it.</p>
+     */
+    private class Runner extends Futuroid<Void, RuntimeException> {
+        
+        /**
+         * Same as the {@link #task}, but with a known class.
+         */
+        private final Step step;
+        
+        private Runner(Lane lane) {
+            this(new Step(lane));
+        }
+        
+        private Runner(Step step) {
+            super(step, RuntimeException.class);
+            this.step = step;
+        }
+        
+        @Override
+        void discarded(Throwable thrown) {
+            Throwable cause = thrown.getCause();
+            step.lane.abort(cause instanceof Exception
+                    ? (Exception) cause : null);
+        }
+    }
+}
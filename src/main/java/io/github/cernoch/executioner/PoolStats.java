@@ -0,0 +1,162 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2017 Radomír Černoch (radomir.cernoch at gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.cernoch.executioner;
+
+/**
+ * Snapshot of the run-time statistics of a {@link ThreadPool}.
+ * 
+ * <p>Counters are read one after another while the pool is running,
+ * hence they need not be mutually consistent. For example, a task may be
+ * counted as completed, but not yet as submitted.</p>
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ * @see ThreadPool#stats()
+ */
+public class PoolStats {
+    
+    /**
+     * Time of the snapshot, as given by {@link System#nanoTime()}.
+     */
+    public final long taken;
+    
+    /**
+     * Number of nanoseconds since the previous snapshot of the same pool.
+     */
+    public final long elapsed;
+    
+    /**
+     * Number of tasks waiting in the queue.
+     */
+    public final int queued;
+    
+    /**
+     * Number of worker threads.
+     */
+    public final int live;
+    
+    /**
+     * Number of worker threads waiting for a task.
+     */
+    public final int idle;
+    
+    /**
+     * Number of worker threads executing a task.
+     */
+    public final int busy;
+    
+    /**
+     * Number of tasks accepted by the pool.
+     */
+    public final long submitted;
+    
+    /**
+     * Number of tasks that have returned a value.
+     */
+    public final long completed;
+    
+    /**
+     * Number of tasks that have thrown an exception.
+     */
+    public final long failed;
+    
+    /**
+     * Number of queued tasks that have never been executed.
+     */
+    public final long cancelled;
+    
+    /**
+     * Number of tasks which have not fit into the bounded queue.
+     */
+    public final long rejected;
+    
+    /**
+     * Number of tasks which were still queued at their deadline.
+     */
+    public final long missed;
+    
+    /**
+     * Tasks submitted per second since the previous snapshot.
+     */
+    public final double submitRate;
+    
+    /**
+     * Tasks completed or failed per second since the previous snapshot.
+     */
+    public final double finishRate;
+
+    /**
+     * Default constructor initializes all values and computes the rates.
+     * 
+     * @param previous earlier snapshot of the same pool,
+     *  {@code null} for the very first one
+     * @param taken time of the snapshot in nanoseconds
+     * @param queued number of queued tasks
+     * @param live number of worker threads
+     * @param idle number of waiting worker threads
+     * @param busy number of executing worker threads
+     * @param submitted number of accepted tasks
+     * @param completed number of tasks that have returned a value
+     * @param failed number of tasks that have thrown an exception
+     * @param cancelled number of never executed tasks
+     * @param rejected number of tasks that have not fit into the queue
+     * @param missed number of tasks that have missed their deadline
+     */
+    public PoolStats(PoolStats previous, long taken,
+            int queued, int live, int idle, int busy,
+            long submitted, long completed, long failed,
+            long cancelled, long rejected, long missed) {
+        this.taken = taken;
+        this.queued = queued;
+        this.live = live;
+        this.idle = idle;
+        this.busy = busy;
+        this.submitted = submitted;
+        this.completed = completed;
+        this.failed = failed;
+        this.cancelled = cancelled;
+        this.rejected = rejected;
+        this.missed = missed;
+        
+        if (previous == null || taken <= previous.taken) {
+            this.elapsed = 0L;
+            this.submitRate = 0.0;
+            this.finishRate = 0.0;
+        } else {
+            this.elapsed = taken - previous.taken;
+            double seconds = elapsed / 1e9;
+            this.submitRate = (submitted - previous.submitted) / seconds;
+            this.finishRate = (completed + failed
+                    - previous.completed - previous.failed) / seconds;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("queued=%d, live=%d (idle=%d, busy=%d), "
+                + "submitted=%d, completed=%d, failed=%d, cancelled=%d, "
+                + "rejected=%d, missed=%d, rates=%.1f/%.1f per second",
+                queued, live, idle, busy, submitted, completed, failed,
+                cancelled, rejected, missed, submitRate, finishRate);
+    }
+}
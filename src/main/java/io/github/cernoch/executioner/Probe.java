@@ -0,0 +1,76 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2017 Radomír Černoch (radomir.cernoch at gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.cernoch.executioner;
+
+/**
+ * Observer of the task life-cycle in a {@link ThreadPool}.
+ * 
+ * <p>Methods are called from the submitting and worker threads, right on
+ * the hot path. Implementations must be thread-safe and fast. They should
+ * not allocate, e.g. by boxing the numbers or by building strings.</p>
+ * 
+ * <p>All methods do nothing by default.</p>
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ * @see ThreadPool.Builder#probe(Probe)
+ */
+public interface Probe {
+    
+    /**
+     * Task has been put into the queue.
+     * 
+     * @param task the submitted task
+     */
+    default void enqueued(Future<?,?> task) {
+    }
+    
+    /**
+     * Worker starts executing a task.
+     * 
+     * @param task the task
+     * @param waited number of nanoseconds the task spent in the queue
+     */
+    default void started(Future<?,?> task, long waited) {
+    }
+    
+    /**
+     * Worker has finished executing a task.
+     * 
+     * @param task the task, which is {@link Future.Status#DONE}
+     * @param waited number of nanoseconds the task spent in the queue
+     * @param ran number of nanoseconds the task was running
+     * @param failed {@code true} if the task has thrown an exception
+     */
+    default void finished(Future<?,?> task,
+            long waited, long ran, boolean failed) {
+    }
+    
+    /**
+     * Queued task has been cancelled and will never be executed.
+     * 
+     * @param task the task, which is {@link Future.Status#DONE}
+     */
+    default void cancelled(Future<?,?> task) {
+    }
+}
@@ -0,0 +1,153 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2017 Radomír Černoch (radomir.cernoch at gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.cernoch.executioner;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * Loop body processing a range of indexes, see
+ * {@link ThreadPool#parallelFor(Class, long, long, RangeBody)}.
+ * 
+ * <p>The body is called once per chunk, never per index, so it can run
+ * a plain primitive loop. Nothing is boxed or allocated per element.
+ * Static methods adapt per-index callbacks:</p>
+ * 
+ * <pre>
+double[] squares = new double[1_000_000];
+pool.parallelFor(RuntimeException.class, 0, squares.length,
+    RangeBody.fill(squares, i -&gt; (double) i * i));</pre>
+ * 
+ * @param <E> type of a checked exception
+ * 
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+@FunctionalInterface
+public interface RangeBody<E extends Exception> {
+    
+    /**
+     * Process indexes from {@code from} (inclusive) to {@code to}.
+     * 
+     * @param from first index
+     * @param to index after the last one
+     * @throws E if an index cannot be processed
+     */
+    void run(long from, long to) throws E;
+    
+    /**
+     * Callback for a single {@code int} index.
+     * 
+     * @param <E> type of a checked exception
+     */
+    @FunctionalInterface
+    interface IntBody<E extends Exception> {
+        void run(int index) throws E;
+    }
+    
+    /**
+     * Callback for a single {@code long} index.
+     * 
+     * @param <E> type of a checked exception
+     */
+    @FunctionalInterface
+    interface LongBody<E extends Exception> {
+        void run(long index) throws E;
+    }
+    
+    /**
+     * Function computing a {@code double} value of an index.
+     * 
+     * @param <E> type of a checked exception
+     */
+    @FunctionalInterface
+    interface DoubleOf<E extends Exception> {
+        double of(long index) throws E;
+    }
+    
+    /**
+     * Call a callback for every {@code int} index.
+     * 
+     * @param <E> type of a checked exception
+     * @param body callback, the range must fit into {@code int}
+     * @return a non-{@code null} loop body
+     */
+    static <E extends Exception> RangeBody<E> ints(IntBody<E> body) {
+        return (from, to) -> {
+            for (int i = (int) from; i < to; i++) {
+                body.run(i);
+            }
+        };
+    }
+    
+    /**
+     * Call a callback for every {@code long} index.
+     * 
+     * @param <E> type of a checked exception
+     * @param body callback
+     * @return a non-{@code null} loop body
+     */
+    static <E extends Exception> RangeBody<E> longs(LongBody<E> body) {
+        return (from, to) -> {
+            for (long i = from; i < to; i++) {
+                body.run(i);
+            }
+        };
+    }
+    
+    /**
+     * Store the value of every index in an array.
+     * 
+     * @param <E> type of a checked exception
+     * @param target array indexed by the range
+     * @param fn value of an index
+     * @return a non-{@code null} loop body
+     */
+    static <E extends Exception> RangeBody<E> fill(
+            double[] target, DoubleOf<E> fn) {
+        return (from, to) -> {
+            for (int i = (int) from; i < to; i++) {
+                target[i] = fn.of(i);
+            }
+        };
+    }
+    
+    /**
+     * Store the value of every index in a (possibly direct) buffer.
+     * 
+     * <p>Only absolute puts are used, so the threads do not interfere
+     * through the position of the buffer.</p>
+     * 
+     * @param <E> type of a checked exception
+     * @param target buffer indexed by the range
+     * @param fn value of an index
+     * @return a non-{@code null} loop body
+     */
+    static <E extends Exception> RangeBody<E> fill(
+            DoubleBuffer target, DoubleOf<E> fn) {
+        return (from, to) -> {
+            for (int i = (int) from; i < to; i++) {
+                target.put(i, fn.of(i));
+            }
+        };
+    }
+}
@@ -0,0 +1,184 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2017 Radomír Černoch (radomir.cernoch at gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.cernoch.executioner;
+
+/**
+ * Divide-and-conquer computation, which forks sub-computations
+ * and joins their results without blocking the pool.
+ * 
+ * <p>While a task {@linkplain #join joins} a forked sub-task, its worker
+ * executes the sub-task itself or other queued tasks, see
+ * {@link ThreadPool#join(Futuroid)}. A pool with
+ * {@linkplain ThreadPool.Builder#stealing work-stealing} suits this
+ * the best. Summing an array may look:</p>
+ * 
+ * <pre>
+class Sum extends RecursiveCall&lt;Long, RuntimeException&gt; {
+    final long[] array; final int from, to;
+    
+    Sum(long[] array, int from, int to) { ... }
+    
+    protected Long compute() {
+        if (to - from &lt; 10_000 || !forkable()) {
+            long sum = 0;
+            for (int i = from; i &lt; to; i++) sum += array[i];
+            return sum;
+        }
+        int mid = (from + to) &gt;&gt;&gt; 1;
+        Futuroid&lt;Long, RuntimeException&gt; left = fork(new Sum(array, from, mid));
+        long right = invoke(new Sum(array, mid, to));
+        return join(left) + right;
+    }
+}
+
+long sum = new Sum(array, 0, array.length)
+    .fork(pool, RuntimeException.class).get();</pre>
+ * 
+ * @param <T> type of the returned value
+ * @param <E> type of allowed checked exception
+ * 
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public abstract class RecursiveCall<T, E extends Exception>
+        implements Call<T, E> {
+    
+    /**
+     * Largest {@link ThreadPool#surplus()}, which is still worth forking.
+     */
+    private static final int SURPLUS = 3;
+    
+    /**
+     * Pool executing this computation, set when forked.
+     */
+    private ThreadPool pool;
+    
+    /**
+     * Class of the checked exception, set when forked.
+     */
+    private Class<E> catchable;
+    
+    /**
+     * Constructor for subclasses, the computation is not forked yet.
+     */
+    protected RecursiveCall() {
+    }
+    
+    /**
+     * The actual computation, which may fork and join sub-computations.
+     * 
+     * @return result of the computation
+     * @throws E if the computation fails
+     * @throws InterruptedException if the computation is interrupted
+     */
+    protected abstract T compute() throws E, InterruptedException;
+    
+    /**
+     * Do not override, {@link #compute()} is called instead.
+     * 
+     * <p>An interrupted computation fails with an
+     * {@link IllegalStateException} caused by the
+     * {@link InterruptedException}.</p>
+     * 
+     * @return result of the computation
+     * @throws E if the computation fails
+     */
+    @Override
+    public final T call() throws E {
+        try {
+            return compute();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        }
+    }
+    
+    /**
+     * Submit this computation to a pool.
+     * 
+     * @param pool pool executing this computation and its sub-computations
+     * @param catchable class which contains E
+     * @return a future that holds the computation result
+     * @throws IllegalStateException if the pool does not accept the task
+     */
+    public Futuroid<T,E> fork(ThreadPool pool, Class<E> catchable) {
+        this.pool = pool;
+        this.catchable = catchable;
+        return pool.submit(catchable, this);
+    }
+    
+    /**
+     * Submit a sub-computation to the pool of this computation.
+     * 
+     * @param sub sub-computation that has not been forked yet
+     * @return a future to be {@linkplain #join joined}
+     * @throws IllegalStateException if the pool does not accept the task
+     */
+    protected Futuroid<T,E> fork(RecursiveCall<T,E> sub) {
+        return sub.fork(pool, catchable);
+    }
+    
+    /**
+     * Compute a sub-computation directly in the current thread.
+     * 
+     * @param sub sub-computation that has not been forked yet
+     * @return result of the sub-computation
+     * @throws E if the sub-computation fails
+     * @throws InterruptedException if the sub-computation is interrupted
+     */
+    protected T invoke(RecursiveCall<T,E> sub)
+            throws E, InterruptedException {
+        sub.pool = pool;
+        sub.catchable = catchable;
+        return sub.compute();
+    }
+    
+    /**
+     * Wait for a forked sub-computation, executing other tasks meanwhile.
+     * 
+     * @param <U> type of the returned value
+     * @param <F> type of allowed checked exception
+     * @param future future returned by {@link #fork(RecursiveCall)}
+     * @return result of the sub-computation
+     * @throws F if the sub-computation fails
+     * @throws InterruptedException if the computation is interrupted
+     */
+    protected <U, F extends Exception> U join(Futuroid<U,F> future)
+            throws F, InterruptedException {
+        return pool.join(future);
+    }
+    
+    /**
+     * Threshold hint: Is it worth forking another sub-computation?
+     * 
+     * <p>Forking pays off only if an idle worker can take the sub-task.
+     * When the queue is already long, computing sequentially
+     * is faster.</p>
+     * 
+     * @return {@code false} if the computation should continue
+     *  sequentially
+     */
+    protected boolean forkable() {
+        return pool.surplus() <= SURPLUS;
+    }
+}
@@ -53,6 +53,25 @@ public class SpawnPool {
         workers = new ThreadPool(threads, fixed, workerFactory);
         checkers = new ThreadPool(0, false, checkerFactory);
     }
+    
+    /**
+     * Spawn-pool which runs on user-supplied thread pools.
+     * 
+     * <p>Calls blocked on I/O may run on virtual threads:</p>
+     * 
+     * <pre>
+SpawnPool pool = new SpawnPool(
+    new ThreadPool.Builder(0).virtual(1000).build(),
+    new ThreadPool.Builder(0).virtual(0).build());</pre>
+     * 
+     * @param workers pool that executes the sub-tasks
+     * @param checkers pool that monitors the sub-tasks, each spawned call
+     * occupies one of its threads until the best result is known
+     */
+    public SpawnPool(ThreadPool workers, ThreadPool checkers) {
+        this.workers = workers;
+        this.checkers = checkers;
+    }
 
     private <T, E extends Exception> Futuroidy<T, E> submit(
             List<Futuroid<T,E>> sink, Futuroidy<T,E> fee, Class<E> catchable,
@@ -66,6 +85,8 @@ public class SpawnPool {
             sink.add(foid);
         }
         
+        Flight.raceStarted(sink.size(), fee.timeOut);
+        
         // Start monitoring the subtasks and return the first one
         checkers.submit(InterruptedException.class, checker);
 
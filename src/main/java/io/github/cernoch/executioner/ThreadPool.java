@@ -23,14 +23,39 @@
  */
 package io.github.cernoch.executioner;
 
-import java.util.*;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadFactory;
-import java.util.logging.Level;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BinaryOperator;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Logger;
 
 import static java.util.logging.Level.*;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 /**
  * Thread pool holds a number of threads for asynchronous calculation.
@@ -40,9 +65,9 @@ import static java.util.logging.Level.*;
 public class ThreadPool {
     
     /**
-     * List of threads currently waiting for a task.
+     * Workers started by this pool, which have not terminated yet.
      */
-    private final List<Thread> pool = new LinkedList<>();
+    private final Set<Worker> pool = ConcurrentHashMap.newKeySet();
 
     /**
      * Fixed pools do not create new threads on demand.
@@ -54,109 +79,1748 @@ public class ThreadPool {
      */
     private final ThreadFactory factory;
     
+    /**
+     * Each worker has its own deque and steals from the others when idle.
+     */
+    private final boolean stealing;
+    
+    /**
+     * Maximum number of live threads, {@code 0} means no limit.
+     */
+    private final int max;
+    
+    /**
+     * Maximum number of tasks a worker takes from the queue at once.
+     */
+    private final int drain;
+    
+    /**
+     * Maximum number of queued tasks, {@code 0} means no limit.
+     */
+    private final int capacity;
+    
+    /**
+     * Free places in a bounded queue, {@code null} if not bounded.
+     */
+    private final Semaphore room;
+    
+    /**
+     * What happens to a task that does not fit into the queue.
+     */
+    private final Overflow overflow;
+    
+    /**
+     * How idle workers wait for new tasks.
+     */
+    private final Idle idling;
+    
+    /**
+     * Submitters may hand tasks directly to idle workers.
+     */
+    private final boolean handoff;
+    
+    /**
+     * Number of milliseconds to wait with {@link Overflow#BLOCK}.
+     */
+    private final long overflowTimeOut;
+    
+    /**
+     * Number of milliseconds a non-zombie thread waits for a new task.
+     */
+    private final long keepAlive;
+    
+    /**
+     * Minimum number of milliseconds between starting new threads
+     * and also the age of the oldest queued task that justifies it.
+     */
+    private final long spawnDelay;
+    
+    /**
+     * Cancel tasks whose deadline has passed while queued.
+     */
+    private final boolean expire;
+    
+    /**
+     * Nanoseconds after which a queued task gains one priority level.
+     */
+    private final long aging;
+    
+    /**
+     * Timer for delayed and periodic tasks.
+     */
+    private final Wheel wheel;
+    
+    /**
+     * Number of buckets in the {@link #wheel}.
+     */
+    private static final int WHEEL_SIZE = 1024;
+    
+    /**
+     * Observer of the task life-cycle, {@code null} if there is none.
+     */
+    private final Probe probe;
+    
+    /**
+     * Nanoseconds spent in the queue, {@code null} if not measured.
+     */
+    private final Histogram queueWait;
+    
+    /**
+     * Nanoseconds spent executing, {@code null} if not measured.
+     */
+    private final Histogram runTime;
+    
+    /**
+     * Do workers measure every task (with a probe or histograms)?
+     */
+    private final boolean measured;
+    
+    /**
+     * Worker running in the current thread, if it belongs to this pool.
+     */
+    private final ThreadLocal<Worker> current = new ThreadLocal<>();
+    
     /**
      * Create a new thread pool with a default thread factory.
      * 
-     * <p>Pools that are not {@code fixed} always ensure that
-     * {@linkplain #submit(Class, Call) submitted} calls
-     * will start the computation very quickly.</p>
+     * <p>Pools that are not {@code fixed} always ensure that
+     * {@linkplain #submit(Class, Call) submitted} calls
+     * will start the computation very quickly.</p>
+     * 
+     * @param threads number of cached threads to be always available
+     * @param fixed {@code true} forbids creating new threads on demand
+     */
+    public ThreadPool(int threads, boolean fixed) {
+        this(threads, fixed, Executors.defaultThreadFactory());
+    }
+    
+    /**
+     * Create a new thread pool with a user-supplied thread factory.
+     * 
+     * <p>Pools that are not {@code fixed} always ensure that
+     * {@linkplain #submit(Class, Call) submitted} calls
+     * will start the computation very quickly.</p>
+     * 
+     * <p>A custom thread factory may be used to define custom thread names.</p>
+     * 
+     * @param threads number of cached threads to be always available
+     * @param fixed {@code true} forbids creating new threads on demand
+     * @param factory non-{@code null} factory for new threads
+     */
+    public ThreadPool(int threads, boolean fixed,
+            ThreadFactory factory) {
+
+        this(new Builder(threads).fixed(fixed).factory(factory));
+    }
+    
+    /**
+     * Create a new thread pool configured by a {@link Builder}.
+     * 
+     * @param builder non-{@code null} configuration
+     * @see Builder#build()
+     */
+    protected ThreadPool(Builder builder) {
+        this.fixed = builder.fixed;
+        this.factory = builder.factory;
+        this.stealing = builder.stealing;
+        this.max = builder.max;
+        this.spawnDelay = builder.spawnDelay;
+        this.expire = builder.expire;
+        this.aging = builder.aging * 1_000_000L;
+        this.wheel = new Wheel(this, builder.tick * 1_000_000L, WHEEL_SIZE);
+        this.drain = builder.drain;
+        this.capacity = builder.capacity;
+        this.room = capacity > 0 ? new Semaphore(capacity) : null;
+        this.overflow = builder.overflow;
+        this.idling = builder.idle;
+        this.handoff = idling != Idle.BLOCK;
+        this.overflowTimeOut = builder.overflowTimeOut;
+        this.keepAlive = builder.keepAlive;
+        this.probe = builder.probe;
+        this.queueWait = builder.latencies ? new Histogram() : null;
+        this.runTime = builder.latencies ? new Histogram() : null;
+        this.measured = probe != null || builder.latencies;
+        
+        live.set(builder.threads);
+        startThreads(builder.threads, true);
+    }
+    
+    /**
+     * Configuration of a new {@link ThreadPool}.
+     * 
+     * <p>Typical usage for a recursive computation:</p>
+     * 
+     * <pre>
+int threads = Runtime.getRuntime().availableProcessors();
+ThreadPool pool = new ThreadPool.Builder(threads)
+    .fixed(true).stealing(true).build();</pre>
+     */
+    public static class Builder {
+        
+        private final int threads;
+        
+        private boolean fixed = false;
+        
+        private ThreadFactory factory = Executors.defaultThreadFactory();
+        
+        private boolean stealing = false;
+        
+        private int max = 0;
+        
+        private long keepAlive = 3000L;
+        
+        private long spawnDelay = 0;
+        
+        private boolean expire = false;
+        
+        private long aging = 10;
+        
+        private long tick = 1;
+        
+        private Probe probe = null;
+        
+        private boolean latencies = false;
+        
+        private int drain = 1;
+        
+        private int capacity = 0;
+        
+        private Overflow overflow = Overflow.BLOCK;
+        
+        private long overflowTimeOut = 0;
+        
+        private Idle idle = Idle.BLOCK;
+
+        /**
+         * Start the configuration of a pool.
+         * 
+         * @param threads number of cached threads to be always available
+         */
+        public Builder(int threads) {
+            this.threads = threads;
+        }
+        
+        /**
+         * Forbid creating new threads on demand.
+         * 
+         * @param fixed {@code true} forbids creating new threads on demand
+         * @return this builder
+         */
+        public Builder fixed(boolean fixed) {
+            this.fixed = fixed;
+            return this;
+        }
+        
+        /**
+         * Use a custom thread factory, e.g. to define custom thread names.
+         * 
+         * @param factory non-{@code null} factory for new threads
+         * @return this builder
+         */
+        public Builder factory(ThreadFactory factory) {
+            this.factory = factory;
+            return this;
+        }
+        
+        /**
+         * Switch to the work-stealing mode.
+         * 
+         * <p>Calls submitted from inside a running task are pushed to
+         * the deque of the current worker and executed in the LIFO order.
+         * Idle workers first look into their own deque, then into
+         * the shared queue and finally steal the oldest task
+         * from the other workers.</p>
+         * 
+         * @param stealing {@code true} enables the work-stealing mode
+         * @return this builder
+         */
+        public Builder stealing(boolean stealing) {
+            this.stealing = stealing;
+            return this;
+        }
+        
+        /**
+         * Limit the number of threads started on demand.
+         * 
+         * <p>The pool always keeps the number of threads given to the
+         * {@linkplain #Builder(int) constructor}. If the pool is not
+         * {@linkplain #fixed(boolean) fixed}, it may grow up to
+         * {@code max} threads. Extra threads terminate after staying idle
+         * for the {@linkplain #keepAlive(long) keep-alive} period.</p>
+         * 
+         * @param max maximum number of threads, {@code 0} for no limit
+         * @return this builder
+         */
+        public Builder max(int max) {
+            this.max = max;
+            return this;
+        }
+        
+        /**
+         * Time that an extra thread waits for a new task before it terminates.
+         * 
+         * @param keepAlive number of milliseconds, 3000 by default
+         * @return this builder
+         */
+        public Builder keepAlive(long keepAlive) {
+            this.keepAlive = keepAlive;
+            return this;
+        }
+        
+        /**
+         * Start new threads gradually, only if the queue does not move.
+         * 
+         * <p>By default a pool that is not {@linkplain #fixed(boolean) fixed}
+         * starts a new thread whenever a task is submitted and no thread
+         * is idle. With a positive delay, a new thread is started only if
+         * the oldest queued task has been waiting for at least
+         * {@code spawnDelay} milliseconds, and at most one thread is started
+         * per {@code spawnDelay} milliseconds. This is checked whenever
+         * a task is submitted or finished.</p>
+         * 
+         * @param spawnDelay number of milliseconds, {@code 0} by default
+         * @return this builder
+         */
+        public Builder spawnDelay(long spawnDelay) {
+            this.spawnDelay = spawnDelay;
+            return this;
+        }
+        
+        /**
+         * Do not execute tasks whose deadline has passed in the queue.
+         * 
+         * <p>Such a task is cancelled instead, its {@link Future#get()}
+         * throws an {@link InterruptedException} caused by
+         * a {@link TimeoutException}.</p>
+         * 
+         * @param expire {@code true} to cancel overdue tasks
+         * @return this builder
+         * @see ThreadPool#submit(Class, Call, Instant)
+         */
+        public Builder expire(boolean expire) {
+            this.expire = expire;
+            return this;
+        }
+        
+        /**
+         * Time after which a queued task gains one priority level.
+         * 
+         * @param aging number of milliseconds, 10 by default
+         * @return this builder
+         * @see ThreadPool#submit(Class, Call, int)
+         */
+        public Builder aging(long aging) {
+            this.aging = aging;
+            return this;
+        }
+        
+        /**
+         * Precision of the timer for delayed and periodic tasks,
+         * and for time-outs.
+         * 
+         * @param tick number of milliseconds, 1 by default
+         * @return this builder
+         * @throws IllegalArgumentException if the tick is not positive
+         * @see ThreadPool#schedule(Class, Call, long)
+         * @see ThreadPool#submitWithTimeout(Class, long, Call)
+         */
+        public Builder tick(long tick) {
+            if (tick <= 0) {
+                throw new IllegalArgumentException("Tick must be positive.");
+            }
+            this.tick = tick;
+            return this;
+        }
+        
+        /**
+         * Let workers take several tasks from the shared queue at once.
+         * 
+         * <p>Drained tasks are reserved for the worker that took them
+         * (in the work-stealing mode they go to its deque and may be stolen).
+         * Large values suit many tiny tasks of similar size.</p>
+         * 
+         * @param drain maximum number of tasks taken at once, at least 1
+         * @return this builder
+         */
+        public Builder drain(int drain) {
+            this.drain = Math.max(1, drain);
+            return this;
+        }
+        
+        /**
+         * Limit the number of queued tasks.
+         * 
+         * @param capacity maximum number of tasks waiting in the queue
+         * @param overflow what happens to a task that does not fit
+         * @param timeOut number of milliseconds to wait with
+         * {@link Overflow#BLOCK}, use {@code 0} to wait for ever
+         * @return this builder
+         */
+        public Builder capacity(int capacity,
+                Overflow overflow, long timeOut) {
+            
+            this.capacity = capacity;
+            this.overflow = overflow;
+            this.overflowTimeOut = timeOut;
+            return this;
+        }
+        
+        /**
+         * Choose how idle workers wait for new tasks.
+         * 
+         * <p>Any strategy other than {@link Idle#BLOCK} also lets
+         * submitters hand a task directly to an idle worker,
+         * bypassing the queue.</p>
+         * 
+         * @param idle waiting strategy, {@link Idle#BLOCK} by default
+         * @return this builder
+         */
+        public Builder idle(Idle idle) {
+            this.idle = idle;
+            return this;
+        }
+        
+        /**
+         * Run every task on a new virtual thread.
+         * 
+         * <p>Virtual threads are not cached, each of them exits as soon as
+         * there is nothing in the queue. This suits calls which mostly block
+         * on I/O. {@link Future#interrupt()}, {@link Future#cancel()} and
+         * the stack-trace in {@link TimeoutException} work as usual.</p>
+         * 
+         * <p>If the JVM does not support virtual threads,
+         * a warning is logged and platform threads are used instead.</p>
+         * 
+         * @param limit maximum number of concurrently running threads,
+         * use {@code 0} for no limit
+         * @return this builder
+         */
+        public Builder virtual(int limit) {
+            this.max = limit;
+            this.keepAlive = 0;
+            this.factory = virtualThreads();
+            return this;
+        }
+        
+        /**
+         * Observe the life-cycle of all tasks.
+         * 
+         * @param probe the observer, {@code null} turns the observation off
+         * @return this builder
+         */
+        public Builder probe(Probe probe) {
+            this.probe = probe;
+            return this;
+        }
+        
+        /**
+         * Record the queue wait and run-time of all tasks in histograms.
+         * 
+         * @param latencies {@code true} to record the histograms
+         * @return this builder
+         * @see ThreadPool#queueWait()
+         * @see ThreadPool#runTime()
+         */
+        public Builder latencies(boolean latencies) {
+            this.latencies = latencies;
+            return this;
+        }
+        
+        /**
+         * Create the pool and start its threads.
+         * 
+         * @return a new non-{@code null} pool
+         */
+        public ThreadPool build() {
+            return new ThreadPool(this);
+        }
+    }
+    
+    /**
+     * Factory for virtual threads, if the JVM supports them.
+     * 
+     * @return a non-{@code null} factory, which may produce platform
+     * threads if virtual threads are not available
+     */
+    static ThreadFactory virtualThreads() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder")
+                    .getMethod("factory").invoke(builder);
+            
+        } catch (ReflectiveOperationException ex) {
+            L.log(WARNING, "Virtual threads are not supported,"
+                    + " platform threads will be used instead.", ex);
+            return Executors.defaultThreadFactory();
+        }
+    }
+    
+    /**
+     * Number of live threads (including those which just started).
+     */
+    private final AtomicInteger live = new AtomicInteger();
+    
+    /**
+     * Increment the number of {@link #live} threads if the limit permits.
+     * 
+     * @return {@code true} if the caller may start a new thread
+     */
+    private boolean reserve() {
+        int now;
+        do {
+            now = live.get();
+            if (max > 0 && now >= max) {
+                return false;
+            }
+        } while (!live.compareAndSet(now, now + 1));
+        return true;
+    }
+    
+    /**
+     * Time when the last thread has been started on demand.
+     */
+    private final AtomicLong spawnedAt = new AtomicLong(System.nanoTime());
+    
+    /**
+     * Number of threads started on demand.
+     */
+    private final LongAdder spawned = new LongAdder();
+    
+    /**
+     * Number of threads which have terminated.
+     */
+    private final LongAdder retired = new LongAdder();
+    
+    /**
+     * Maximum number of threads started on demand for one batch.
+     * 
+     * <p>More threads than processors would not finish the batch sooner,
+     * the started workers take the remaining tasks one after another.</p>
+     */
+    private static final int BATCH_GROWTH
+            = Runtime.getRuntime().availableProcessors();
+    
+    /**
+     * Start a new thread if the pool is not fixed and allowed to grow.
+     * 
+     * @return {@code true} if a new thread has been started
+     */
+    private boolean grow() {
+        if (fixed) {
+            return false;
+        }
+        
+        // With no live thread, nobody else would check the queue again
+        if (spawnDelay > 0 && live.get() > 0) {
+            Futuroid<?,?> oldest = queue.peek();
+            Iterator<Futuroid<?,?>> first = ranked.iterator();
+            if (first.hasNext()) {
+                Futuroid<?,?> head = first.next();
+                if (oldest == null || head.enqueued - oldest.enqueued < 0) {
+                    oldest = head;
+                }
+            }
+            long now = System.nanoTime();
+            long delay = MILLISECONDS.toNanos(spawnDelay);
+            long last = spawnedAt.get();
+            
+            if (oldest == null || now - oldest.enqueued < delay
+                    || now - last < delay
+                    || !spawnedAt.compareAndSet(last, now)) {
+                return false;
+            }
+        }
+        
+        if (!reserve()) {
+            return false;
+        }
+        spawned.increment();
+        startThreads(1, false);
+        return true;
+    }
+    
+    /**
+     * Number of live threads.
+     * 
+     * @return non-negative number
+     */
+    public int threads() {
+        return live.get();
+    }
+    
+    /**
+     * Number of threads started on demand since the pool was created.
+     * 
+     * @return non-negative number
+     */
+    public long spawned() {
+        return spawned.sum();
+    }
+    
+    /**
+     * Number of threads that have terminated since the pool was created.
+     * 
+     * @return non-negative number
+     */
+    public long retired() {
+        return retired.sum();
+    }
+    
+    /**
+     * Determines if any queue contains a task.
+     * 
+     * @return {@code false} if there is nothing to do
+     */
+    private boolean pending() {
+        if (!queue.isEmpty() || !ranked.isEmpty()) {
+            return true;
+        }
+        if (stealing) {
+            for (Worker worker : pool) {
+                if (!worker.local.isEmpty()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Start new threads, which have been already counted as {@link #live}.
+     * 
+     * @param count number of threads to be started
+     * @param zombie {@code true} new threads will wait for new tasks until
+     * someone {@linkplain Thread#interrupt() interrupts} them
+     * (e.g. using {@link #shutdown()}).
+     */
+    private void startThreads(int count, boolean zombie) {
+        
+        for (int i = 0; i < count; i++) {
+            Worker worker = new Worker(zombie);
+            worker.thread = factory.newThread(worker);
+            pool.add(worker);
+            worker.thread.start();
+        }
+    }
+    
+    /**
+     * Queue of tasks waiting to be executed.
+     * 
+     * <p>The queue is lock-free and needs no external synchronization.</p>
+     */
+    private final Queue<Futuroid<?,?>> queue = new ConcurrentLinkedQueue<>();
+    
+    /**
+     * Tasks with a deadline or a priority, the earliest rank first.
+     * 
+     * <p>Workers take these tasks before any task from the {@link #queue},
+     * i.e. a task without a deadline has an infinite one. To prevent
+     * starvation, after {@link #RANKED_STREAK} ranked tasks in a row
+     * a worker takes a task without a rank, if there is any.</p>
+     */
+    private final ConcurrentSkipListSet<Futuroid<?,?>> ranked
+            = new ConcurrentSkipListSet<>(ThreadPool::earlier);
+    
+    /**
+     * Order of tasks in {@link #ranked}, by rank and then by submission.
+     * 
+     * <p>Ranks are on the {@link System#nanoTime()} scale, which may wrap
+     * around, so they are compared by a subtraction. Live ranks are never
+     * {@link #MAX_AHEAD} apart. {@link #BOOSTED} tasks go before all
+     * others.</p>
+     * 
+     * @param a first task
+     * @param b second task
+     * @return negative if {@code a} goes first
+     */
+    private static int earlier(Futuroid<?,?> a, Futuroid<?,?> b) {
+        if (a.rank != b.rank) {
+            if (a.rank == BOOSTED) {
+                return -1;
+            }
+            if (b.rank == BOOSTED) {
+                return 1;
+            }
+            return Long.compare(a.rank - b.rank, 0);
+        }
+        return Long.compare(a.seq, b.seq);
+    }
+    
+    /**
+     * Turn a time on the {@link System#nanoTime()} scale into a rank.
+     * 
+     * @param nanos virtual deadline
+     * @return the deadline, unless it collides with {@link #BOOSTED}
+     */
+    private static long rank(long nanos) {
+        return nanos != BOOSTED ? nanos : nanos + 1;
+    }
+    
+    /**
+     * Maximum number of {@link #ranked} tasks that a worker takes in a row,
+     * while tasks without a rank are waiting.
+     */
+    private static final int RANKED_STREAK = 8;
+    
+    /**
+     * Source of {@link Futuroid#seq} for tasks in {@link #ranked}.
+     */
+    private final AtomicLong ranks = new AtomicLong();
+    
+    /**
+     * Workers which are (about to be) parked, waiting for a task.
+     * 
+     * <p>Entries may be stale. A worker is woken up only
+     * if its {@link Worker#wake()} succeeds.</p>
+     */
+    private final Queue<Worker> idle = new ConcurrentLinkedQueue<>();
+    
+    /**
+     * Unpark a single idle worker.
+     * 
+     * @return {@code false} if no worker is idle
+     */
+    private boolean wakeWorker() {
+        Worker worker;
+        while ((worker = idle.poll()) != null) {
+            if (worker.wake()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Policies for tasks that do not fit into a bounded queue.
+     * 
+     * @see Builder#capacity(int, Overflow, long)
+     */
+    public static enum Overflow {
+        
+        /**
+         * Submitter waits until there is room in the queue.
+         * 
+         * <p>Do not use this policy in pools where tasks submit other tasks,
+         * the workers could end up waiting for each other.</p>
+         */
+        BLOCK,
+        
+        /**
+         * Submitter gets a {@link QueueFull} exception.
+         */
+        REJECT,
+        
+        /**
+         * Submitter executes the task itself.
+         */
+        CALLER_RUNS,
+        
+        /**
+         * The oldest queued task is {@linkplain Future#cancel() cancelled}
+         * to make room. Its {@link InterruptedException} is caused
+         * by a {@link QueueFull}.
+         * 
+         * <p>If the shared queue is empty, the task with the latest rank
+         * or a task from a worker's deque is dropped instead. If there is
+         * no such task either, the submitter gets a {@link QueueFull}.</p>
+         */
+        DROP_OLDEST
+    }
+    
+    /**
+     * Strategies of idle workers waiting for new tasks.
+     * 
+     * <p>Waking a parked thread takes tens of microseconds, a spinning
+     * thread notices a new task almost immediately. On the other hand,
+     * each spinning worker occupies a whole CPU core while idle. Without
+     * a spare core per worker, spinning delays the submitters and
+     * the tasks themselves, {@link #BLOCK} is then faster.</p>
+     * 
+     * @see Builder#idle(Idle)
+     */
+    public static enum Idle {
+        
+        /**
+         * Spin until a task arrives or the keep-alive period expires.
+         */
+        SPIN,
+        
+        /**
+         * Spin for a few microseconds, then {@linkplain Thread#yield() yield}
+         * the CPU to other threads until a task arrives.
+         */
+        YIELD,
+        
+        /**
+         * Spin for a few microseconds, then park.
+         */
+        PARK,
+        
+        /**
+         * Park immediately.
+         */
+        BLOCK
+    }
+    
+    /**
+     * Number of {@link Thread#onSpinWait()} calls before yielding or parking.
+     */
+    private static final int SPINS = 10_000;
+    
+    /**
+     * Number of tasks in all queues.
+     */
+    private final LongAdder queued = new LongAdder();
+    
+    /**
+     * Number of tasks that have not fit into the queue.
+     */
+    private final LongAdder rejected = new LongAdder();
+    
+    /**
+     * Number of cancelled tasks, which are still in the queues.
+     */
+    private final LongAdder dead = new LongAdder();
+    
+    /**
+     * Is somebody purging the dead tasks right now?
+     */
+    private final AtomicBoolean purging = new AtomicBoolean();
+    
+    /**
+     * Number of tasks accepted by the pool.
+     */
+    private final LongAdder submitted = new LongAdder();
+    
+    /**
+     * Number of tasks that have returned a value.
+     */
+    private final LongAdder completed = new LongAdder();
+    
+    /**
+     * Number of tasks that have thrown an exception.
+     */
+    private final LongAdder failed = new LongAdder();
+    
+    /**
+     * Number of queued tasks that have never been executed.
+     */
+    private final LongAdder cancelled = new LongAdder();
+    
+    /**
+     * Snapshot returned by the previous call of {@link #stats()}.
+     */
+    private final AtomicReference<PoolStats> lastStats
+            = new AtomicReference<>(new PoolStats(null, System.nanoTime(),
+                    0, 0, 0, 0, 0L, 0L, 0L, 0L, 0L, 0L));
+    
+    /**
+     * Number of tasks waiting in the queue.
+     * 
+     * <p>Tasks cancelled while in the queue are not counted, even if
+     * they have not been {@linkplain #purge() purged} yet.</p>
+     * 
+     * @return non-negative number
+     */
+    public int queued() {
+        return (int) Math.max(0, queued.sum() - dead.sum());
+    }
+    
+    /**
+     * A queued task has been cancelled by its future.
+     * 
+     * <p>The dead entry stays in the queue, but its room in a bounded
+     * queue is freed right away. Dead entries are removed in bulk,
+     * once they make up half of the queue.</p>
+     * 
+     * @param future cancelled future
+     */
+    void abandoned(Futuroid<?,?> future) {
+        cancelled.increment();
+        if (probe != null) {
+            probe.cancelled(future);
+        }
+        Flight.cancelled(future);
+        died();
+    }
+    
+    /**
+     * Account for a new dead entry, which stays in its queue.
+     * 
+     * <p>Its room in a bounded queue is freed right away.</p>
+     */
+    private void died() {
+        dead.increment();
+        if (room != null) {
+            room.release();
+        }
+        long corpses = dead.sum();
+        if (corpses >= PURGE_MIN && 2 * corpses >= queued.sum()) {
+            purge();
+        }
+    }
+    
+    /**
+     * Least number of dead entries, which triggers a purge.
+     */
+    private static final int PURGE_MIN = 64;
+    
+    /**
+     * Remove all cancelled tasks from the queues.
+     * 
+     * <p>This is called automatically once dead entries make up half of
+     * the queue. Tasks reserved by draining workers are not removed,
+     * the workers skip them.</p>
+     */
+    public void purge() {
+        if (!purging.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            queue.removeIf(this::buried);
+            ranked.removeIf(this::buried);
+            if (stealing) {
+                for (Worker worker : pool) {
+                    worker.local.removeIf(this::buried);
+                }
+            }
+        } finally {
+            purging.set(false);
+        }
+    }
+    
+    /**
+     * Claim a dead entry for removal, it is removed from the queue next.
+     * 
+     * @param future entry in a queue
+     * @return {@code true} if the entry should be removed
+     */
+    private boolean buried(Futuroid<?,?> future) {
+        if (future.bury()) {
+            queued.decrement();
+            dead.decrement();
+        }
+        return future.dead();
+    }
+    
+    /**
+     * Account for an entry removed from a queue.
+     * 
+     * @param future entry removed from a queue
+     * @return {@code false} if the future has been cancelled
+     * in the meantime, and it must be skipped
+     */
+    private boolean taken(Futuroid<?,?> future) {
+        if (future.take()) {
+            dequeued();
+            return true;
+        }
+        buried(future);
+        return false;
+    }
+    
+    /**
+     * Number of tasks which have not fit into the bounded queue.
+     * 
+     * <p>This includes rejected tasks, tasks executed by the submitter
+     * and tasks dropped from the queue. It is always {@code 0}
+     * in a pool with no {@linkplain Builder#capacity capacity}.</p>
+     * 
+     * @return non-negative number
+     */
+    public long rejected() {
+        return rejected.sum();
+    }
+    
+    /**
+     * Take a snapshot of the run-time statistics.
+     * 
+     * <p>Rates in the snapshot are computed since the previous call
+     * of this method, or since the pool has been created.
+     * Counters are maintained without locking, so taking a snapshot
+     * does not slow down submitters or workers.</p>
+     * 
+     * @return a non-{@code null} instance
+     */
+    public PoolStats stats() {
+        PoolStats previous = lastStats.get();
+        PoolStats stats = new PoolStats(previous, System.nanoTime(),
+                queued(), threads(), waiting(), busy(),
+                submitted.sum(), completed.sum(), failed.sum(),
+                cancelled.sum(), rejected.sum(), missed.sum());
+        lastStats.compareAndSet(previous, stats);
+        return stats;
+    }
+    
+    /**
+     * Nanoseconds tasks spent in the queue before they started.
+     * 
+     * @return histogram that can be {@linkplain Histogram#reset() reset},
+     *  {@code null} unless enabled by {@link Builder#latencies}
+     */
+    public Histogram queueWait() {
+        return queueWait;
+    }
+    
+    /**
+     * Nanoseconds tasks spent executing, whether they failed or not.
+     * 
+     * @return histogram that can be {@linkplain Histogram#reset() reset},
+     *  {@code null} unless enabled by {@link Builder#latencies}
+     */
+    public Histogram runTime() {
+        return runTime;
+    }
+    
+    /**
+     * Apply a function to all elements of a list in parallel.
+     * 
+     * <p>Instead of submitting a task per element, the submitter and
+     * at most {@link #threads()} workers take chunks of the list. Chunk size
+     * adapts to the measured time per element, cheap elements are processed
+     * in large chunks. The first exception stops the processing, though
+     * chunks already being processed are finished in the background.</p>
+     * 
+     * @param <A> type of the elements
+     * @param <T> type of the results
+     * @param <E> type of allowed checked exception
+     * @param catchable class which contains E
+     * @param input elements, the list should have a fast random access
+     * @param fn function applied to every element
+     * @return results in the same order as the {@code input}
+     * @throws E the first exception thrown by the function
+     * @throws InterruptedException if the submitter is interrupted
+     * @throws IllegalStateException if the pool has been shut down
+     */
+    public <A,T,E extends Exception> List<T> map(Class<E> catchable,
+            List<A> input, Fn<? super A, ? extends T, ? extends E> fn)
+            throws E, InterruptedException {
+        
+        checkClosed(Collections.emptyList());
+        Object[] results = new Object[input.size()];
+        new Chunks(input.size(), participants(input.size())) {
+            @Override
+            void process(long from, long to) throws Exception {
+                for (int i = (int) from; i < to; i++) {
+                    results[i] = fn.apply(input.get(i));
+                }
+            }
+        }.run(this, catchable);
+        
+        @SuppressWarnings("unchecked")
+        List<T> list = (List<T>) Arrays.asList(results);
+        return Collections.unmodifiableList(list);
+    }
+    
+    /**
+     * Apply a function to all elements and combine the results in parallel.
+     * 
+     * <p>Elements are processed as in {@link #map(Class, List, Fn)}, but
+     * every chunk is reduced to a single value right away. The combining
+     * operation must be associative, it need not be commutative, because
+     * the partial results are combined in the order of the input.</p>
+     * 
+     * @param <A> type of the elements
+     * @param <T> type of the results
+     * @param <E> type of allowed checked exception
+     * @param catchable class which contains E
+     * @param input elements, the list should have a fast random access
+     * @param fn function applied to every element
+     * @param identity result for an empty list
+     * @param combine associative operation combining two results
+     * @return {@code identity} combined with the results of all elements
+     * @throws E the first exception thrown by the function
+     * @throws InterruptedException if the submitter is interrupted
+     * @throws IllegalStateException if the pool has been shut down
+     */
+    public <A,T,E extends Exception> T reduce(Class<E> catchable,
+            List<A> input, Fn<? super A, ? extends T, ? extends E> fn,
+            T identity, BinaryOperator<T> combine)
+            throws E, InterruptedException {
+        
+        checkClosed(Collections.emptyList());
+        ConcurrentSkipListMap<Integer, T> partial
+                = new ConcurrentSkipListMap<>();
+        new Chunks(input.size(), participants(input.size())) {
+            @Override
+            void process(long from, long to) throws Exception {
+                T value = fn.apply(input.get((int) from));
+                for (int i = (int) from + 1; i < to; i++) {
+                    value = combine.apply(value, fn.apply(input.get(i)));
+                }
+                partial.put((int) from, value);
+            }
+        }.run(this, catchable);
+        
+        T result = identity;
+        for (T value : partial.values()) {
+            result = combine.apply(result, value);
+        }
+        return result;
+    }
+    
+    /**
+     * Number of indexes in a cache-line-aligned chunk boundary.
+     * 
+     * <p>A cache line has 64 bytes, which is 64 indexes of a byte array
+     * or 8 indexes of a long array. Multiples of 64 indexes are therefore
+     * line boundaries for every primitive type, if the array starts
+     * at a line boundary (as buffers from {@code alignedSlice(64)} do).</p>
+     */
+    private static final long CACHE_LINE = 64L;
+    
+    /**
+     * Run a loop body over a range of indexes in parallel.
+     * 
+     * <p>The range is split into chunks, which are processed by the submitter
+     * and at most {@link #threads()} workers. Chunks are sized adaptively
+     * as in {@link #map(Class, List, Fn)}. Chunk boundaries are multiples
+     * of 64 indexes, so two threads never write into the same cache line
+     * of an aligned buffer. Nothing is allocated per chunk or per index.</p>
+     * 
+     * @param <E> type of allowed checked exception
+     * @param catchable class which contains E
+     * @param from first index
+     * @param to index after the last one
+     * @param body called for every chunk
+     * @throws E the first exception thrown by the body
+     * @throws InterruptedException if the submitter is interrupted
+     * @throws IllegalStateException if the pool has been shut down
+     * @see RangeBody
+     */
+    public <E extends Exception> void parallelFor(Class<E> catchable,
+            long from, long to, RangeBody<? extends E> body)
+            throws E, InterruptedException {
+        
+        checkClosed(Collections.emptyList());
+        int size = (int) Math.min(Integer.MAX_VALUE, Math.max(0L,
+                (to - from + CACHE_LINE - 1) / CACHE_LINE));
+        new Chunks(from, to, CACHE_LINE, participants(size)) {
+            @Override
+            void process(long from, long to) throws Exception {
+                body.run(from, to);
+            }
+        }.run(this, catchable);
+    }
+    
+    /**
+     * Number of threads that should process a list in chunks.
+     * 
+     * @param size number of elements
+     * @return the submitter and one helper per worker, but not more
+     *  than elements
+     */
+    private int participants(int size) {
+        int helpers = current.get() != null ? threads() - 1 : threads();
+        if (!fixed && helpers <= 0) {
+            helpers = 1;
+        }
+        return Math.max(1, Math.min(size, helpers + 1));
+    }
+    
+    /**
+     * Wait for a future, executing other tasks in the meantime.
+     * 
+     * <p>A worker of this pool, which waits for a result of a task it has
+     * submitted, does not block. It executes the awaited task itself if no
+     * other worker has taken it yet, or any other queued task. Hence a
+     * recursive computation cannot dead-lock a fixed pool. The awaited
+     * task is claimed in constant time, its entry is left in the queue
+     * and removed later, like a cancelled one. In any other thread,
+     * this method is the same as {@link Futuroid#get()}.</p>
+     * 
+     * @param <T> type of the returned value
+     * @param <E> type of allowed checked exception
+     * @param future future of a task submitted to this pool
+     * @return result of the computation
+     * @throws InterruptedException if the waiting thread is interrupted
+     * @throws E exception thrown by the computation
+     * @see RecursiveCall
+     */
+    public <T,E extends Exception> T join(Futuroid<T,E> future)
+            throws InterruptedException, E {
+        Worker worker = current.get();
+        if (worker != null) {
+            worker.help(future);
+        }
+        return future.get();
+    }
+    
+    /**
+     * Number of queued tasks exceeding the number of idle workers.
+     * 
+     * @return positive if nobody is going to take a new task soon
+     */
+    int surplus() {
+        return queued() - waiting.get();
+    }
+    
+    /**
+     * A task has been executed, count the outcome.
+     * 
+     * @param future task in the {@link Future.Status#DONE} state
+     */
+    private void executed(Futuroid<?,?> future) {
+        if (future.thrown == null) {
+            completed.increment();
+        } else {
+            failed.increment();
+        }
+    }
+    
+    /**
+     * Make room for a new task, applying the {@link #overflow} policy.
+     * 
+     * @return {@code false} if the caller should execute the task itself
+     * @throws QueueFull if the task is rejected
+     * @throws InterruptedException if the submitter is interrupted
+     */
+    private boolean admit() throws QueueFull, InterruptedException {
+        if (room == null || room.tryAcquire()) {
+            return true;
+        }
+        
+        switch (overflow) {
+            case BLOCK:
+                if (overflowTimeOut <= 0) {
+                    room.acquire();
+                    return true;
+                }
+                if (room.tryAcquire(overflowTimeOut, MILLISECONDS)) {
+                    return true;
+                }
+                break;
+                
+            case CALLER_RUNS:
+                rejected.increment();
+                return false;
+                
+            case DROP_OLDEST:
+                if (dropOldest()) {
+                    return true;
+                }
+                break;
+        }
+        
+        rejected.increment();
+        throw new QueueFull(capacity);
+    }
+    
+    /**
+     * Cancel queued tasks until there is room for a new one.
+     * 
+     * @return {@code false} if there is no task to be dropped,
+     *  because all queued tasks have been drained by workers
+     */
+    private boolean dropOldest() {
+        while (!room.tryAcquire()) {
+            Futuroid<?,?> oldest = victim();
+            if (oldest == null) {
+                return false;
+            }
+            
+            // Dead entries also make room
+            if (taken(oldest)) {
+                rejected.increment();
+                cancelled(oldest, new QueueFull(capacity));
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Remove a task to be dropped by the {@link Overflow#DROP_OLDEST} policy.
+     * 
+     * @return the oldest task in the shared queue, otherwise the lowest
+     *  ranked task or the newest task in a worker's deque, or {@code null}
+     */
+    private Futuroid<?,?> victim() {
+        Futuroid<?,?> task = queue.poll();
+        if (task == null) {
+            task = ranked.pollLast();
+        }
+        for (Iterator<Worker> it = pool.iterator();
+                task == null && it.hasNext();) {
+            task = it.next().local.pollLast();
+        }
+        return task;
+    }
+    
+    /**
+     * Put a future in the queue, there must be room for it.
+     * 
+     * @param future instance that will NEVER be submitted to another pool
+     */
+    private void enqueue(Futuroid<?,?> future) {
+        
+        future.enqueued = System.nanoTime();
+        future.owner = this;
+        Worker worker = stealing ? current.get() : null;
+        boolean handed = false;
+        if (future.rank != Futuroid.UNRANKED) {
+            future.seq = ranks.getAndIncrement();
+            ranked.add(future);
+        } else if (worker != null) {
+            worker.local.addFirst(future);
+        } else if (!(handed = handoff && handOff(future))) {
+            queue.add(future);
+        }
+        
+        queued.increment();
+        submitted.increment();
+        if (probe != null) {
+            probe.enqueued(future);
+        }
+        Flight.enqueued(future);
+        if (!handed) {
+            signal(1);
+        }
+    }
+    
+    /**
+     * Pass a task to an idle worker, bypassing the queue.
+     * 
+     * <p>The task is put in the worker's {@link Worker#handed} slot before
+     * waking it up. If the worker cannot be woken up, the task is taken
+     * back, unless the worker has already taken it.</p>
+     * 
+     * @param future task that is not in any queue
+     * @return {@code false} if no idle worker has accepted the task
+     */
+    private boolean handOff(Futuroid<?,?> future) {
+        Worker worker;
+        while ((worker = idle.poll()) != null) {
+            // A joining worker could leave with the task in its slot
+            if (!worker.joining
+                    && worker.handed.compareAndSet(null, future)) {
+                if (worker.wake()
+                        || !worker.handed.compareAndSet(future, null)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Cancel a queued task that has been removed from the queue.
+     * 
+     * @param future task that will never be executed
+     * @param cause reason of the cancellation, may be {@code null}
+     */
+    private void cancelled(Futuroid<?,?> future, Exception cause) {
+        future.dropped(cause);
+        cancelled.increment();
+        if (probe != null) {
+            probe.cancelled(future);
+        }
+        Flight.cancelled(future);
+    }
+    
+    /**
+     * A worker has taken a task from the queue.
+     */
+    private void dequeued() {
+        queued.decrement();
+        if (room != null) {
+            room.release();
+        }
+    }
+    
+    /**
+     * Low-level method for a fresh future, which respects the capacity.
+     * 
+     * @param future instance that will NEVER be submitted to another pool
+     * @throws QueueFull if the task is rejected
+     * @throws InterruptedException if the submitter is interrupted
+     */
+    void offer(Futuroid<?,?> future) throws QueueFull, InterruptedException {
+        checkClosed(Collections.emptyList());
+        if (admit()) {
+            enqueue(future);
+            checkClosed(Collections.singletonList(future));
+        } else {
+            submitted.increment();
+            future.execute();
+            executed(future);
+            if (future instanceof Carrier) {
+                released((Carrier) future);
+            }
+        }
+    }
+    
+    /**
+     * Low-level submitting method for a fresh future.
+     * 
+     * @param <T> type of the returned value
+     * @param <E> type of allowed checked exception
+     * @param future instance that will NEVER be submitted to another pool
+     * @throws IllegalStateException if the task is rejected
+     */
+    <T,E extends Exception> void submit(Futuroid<T,E> future) {
+        try {
+            offer(future);
+            
+        } catch (QueueFull ex) {
+            throw new IllegalStateException(ex);
+            
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        }
+    }
+    
+    /**
+     * Low-level submitting method for a batch of fresh futures.
+     * 
+     * <p>All futures become visible to the workers at once,
+     * unless there is not enough room in a bounded queue.</p>
+     * 
+     * @param futures instances that will NEVER be submitted to another pool
+     * @throws IllegalStateException if a task is rejected
+     */
+    void submitAll(Collection<? extends Futuroid<?,?>> futures) {
+        
+        checkClosed(Collections.emptyList());
+        if (room != null && !room.tryAcquire(futures.size())) {
+            for (Futuroid<?,?> future : futures) {
+                submit(future);
+            }
+            return;
+        }
+        
+        long now = System.nanoTime();
+        for (Futuroid<?,?> future : futures) {
+            future.enqueued = now;
+            future.owner = this;
+        }
+        
+        Worker worker = stealing ? current.get() : null;
+        if (worker != null) {
+            worker.local.addAll(futures);
+        } else {
+            queue.addAll(futures);
+        }
+        
+        queued.add(futures.size());
+        submitted.add(futures.size());
+        for (Futuroid<?,?> future : futures) {
+            if (probe != null) {
+                probe.enqueued(future);
+            }
+            Flight.enqueued(future);
+        }
+        signal(futures.size());
+        checkClosed(futures);
+    }
+    
+    /**
+     * Wake idle workers (or start new threads) for new tasks.
+     * 
+     * @param count number of new tasks
+     */
+    private void signal(int count) {
+        while (count > 0 && wakeWorker()) {
+            count--;
+        }
+        count = Math.min(count, BATCH_GROWTH);
+        while (count > 0 && grow()) {
+            count--;
+        }
+    }
+        
+    /**
+     * Submit a computation, which should start before a deadline.
      * 
-     * @param threads number of cached threads to be always available
-     * @param fixed {@code true} forbids creating new threads on demand
+     * <p>Tasks with a deadline are executed earliest-deadline-first,
+     * before tasks without a deadline, which only get an occasional turn
+     * so that they do not starve. A task that starts late counts
+     * as a {@linkplain #missed() missed deadline}. If the pool has been
+     * built to {@linkplain Builder#expire expire} tasks, a task still queued
+     * at its deadline is cancelled instead.</p>
+     * 
+     * @param <T> type of the returned value
+     * @param <E> type of allowed checked exception
+     * @param catchable class which contains E
+     * @param task computation to be performed
+     * @param deadline instant by which the computation should start
+     * @return a future that holds the computation result
+     * @throws IllegalStateException if the task does not fit
+     * into a bounded queue
      */
-    public ThreadPool(int threads, boolean fixed) {
-        this(threads, fixed, Executors.defaultThreadFactory());
+    public <T,E extends Exception> Futuroid<T,E> submit(
+            Class<E> catchable, Call<T,E> task, Instant deadline) {
+        Futuroid<T,E> fut = new Futuroid<>(task, catchable);
+        fut.deadline = nanoTime(deadline);
+        fut.rank = rank(fut.deadline);
+        submit(fut);
+        return fut;
     }
     
     /**
-     * Create a new thread pool with a user-supplied thread factory.
+     * Submit a computation, whose running time is limited.
      * 
-     * <p>Pools that are not {@code fixed} always ensure that
-     * {@linkplain #submit(Class, Call) submitted} calls
-     * will start the computation very quickly.</p>
-     * 
-     * <p>A custom thread factory may be used to define custom thread names.</p>
+     * <p>Once the task has been running for {@code timeOut} milliseconds,
+     * the pool finishes it and interrupts its worker. Then the future's
+     * {@link Futuroid#get()} throws an {@link InterruptedException}
+     * caused by a {@link TimeoutException}, whose cause is
+     * a {@link HereWeWere} with the stack of the worker at that moment.
+     * Nobody has to wait for the future, the limit is tracked by the same
+     * timer as {@linkplain #schedule(Class, Call, long) delayed tasks}.
+     * The limit does not apply if the task is executed by the submitter
+     * due to {@link Overflow#CALLER_RUNS}.</p>
      * 
-     * @param threads number of cached threads to be always available
-     * @param fixed {@code true} forbids creating new threads on demand
-     * @param factory non-{@code null} factory for new threads
+     * @param <T> type of the returned value
+     * @param <E> type of allowed checked exception
+     * @param catchable class which contains E
+     * @param timeOut maximum running time in milliseconds
+     * @param task computation to be performed
+     * @return a future that holds the computation result
+     * @throws IllegalArgumentException if the time-out is not positive
+     * @throws IllegalStateException if the task does not fit
+     * into a bounded queue
+     * @see Builder#tick(long)
      */
-    public ThreadPool(int threads, boolean fixed,
-            ThreadFactory factory) {
-
-        this.fixed = fixed;
-        this.factory = factory;
-        startThreads(threads, true);
+    public <T,E extends Exception> Futuroid<T,E> submitWithTimeout(
+            Class<E> catchable, long timeOut, Call<T,E> task) {
+        if (timeOut <= 0) {
+            throw new IllegalArgumentException("Time-out must be positive.");
+        }
+        Futuroid<T,E> fut = new Futuroid<>(task, catchable);
+        fut.limit = timeOut;
+        submit(fut);
+        return fut;
     }
     
     /**
-     * Start new threads.
+     * Submit a computation after a delay.
      * 
-     * @param count number of threads to be started
-     * @param zombie {@code true} new threads will wait for new tasks until
-     * someone {@linkplain Thread#interrupt() interrupts} them
-     * (e.g. using {@link #shutdown()}).
+     * <p>The task waits in a timer, which does not occupy any worker,
+     * and enters the queue after the delay. Cancelling the future
+     * removes the task from the timer. Tasks that are still delayed when
+     * the pool shuts down are cancelled.</p>
+     * 
+     * @param <T> type of the returned value
+     * @param <E> type of allowed checked exception
+     * @param catchable class which contains E
+     * @param task computation to be performed
+     * @param delay number of milliseconds
+     * @return a future that holds the computation result
+     * @throws IllegalStateException if the pool has been shut down
+     * @see Builder#tick(long)
      */
-    private void startThreads(int count, boolean zombie) {
-        
-        for (int i = 0; i < count; i++) {
-            Thread thread = factory.newThread(new Worker(zombie));
-            pool.add(thread);
-            thread.start();
+    public <T,E extends Exception> Futuroid<T,E> schedule(
+            Class<E> catchable, Call<T,E> task, long delay) {
+        checkClosed(Collections.emptyList());
+        Futuroid<T,E> fut = new Futuroid<>(task, catchable);
+        Wheel.Timer timer = wheel.schedule(fut, null,
+                System.nanoTime() + delay * 1_000_000L);
+        if (closed && timer.cancel()) {
+            throw new IllegalStateException("Pool has been shut down.");
         }
+        return fut;
     }
     
     /**
-     * Queue of tasks waiting to be executed.
+     * Repeat a computation at a fixed rate.
      * 
-     * <p>The linked list is not synchronized, use a
-     * {@code synchronized(this) { ... }} block to access it.</p>
+     * <p>The runs start {@code initialDelay}, {@code initialDelay + period},
+     * {@code initialDelay + 2 * period}, ... milliseconds from now.
+     * A run never overlaps with the previous one, a late run is followed
+     * by the next one immediately. A run which does not fit into a bounded
+     * queue is skipped.</p>
+     * 
+     * <p>The returned future represents the whole series. It stays
+     * {@link Future.Status#QUEUED} until the series is cancelled, or
+     * until a run throws an exception, which the future then holds.
+     * Pool shutdown cancels the series.</p>
+     * 
+     * @param <E> type of allowed checked exception
+     * @param catchable class which contains E
+     * @param task computation to be repeated
+     * @param initialDelay number of milliseconds before the first run
+     * @param period number of milliseconds between two runs
+     * @return a future that represents all runs
+     * @throws IllegalArgumentException if the period is not positive
+     * @throws IllegalStateException if the pool has been shut down
      */
-    private final Queue<Futuroid<?,?>> queue = new LinkedList<>();
+    public <E extends Exception> Futuroid<Void,E> scheduleAtFixedRate(
+            Class<E> catchable, Call<?,E> task,
+            long initialDelay, long period) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be positive.");
+        }
+        checkClosed(Collections.emptyList());
+        Futuroid<Void,E> series = wheel.periodic(catchable, task,
+                System.nanoTime() + initialDelay * 1_000_000L,
+                period * 1_000_000L);
+        Wheel.Timer timer = series.timer;
+        if (closed && timer != null && timer.cancel()) {
+            throw new IllegalStateException("Pool has been shut down.");
+        }
+        return series;
+    }
     
     /**
-     * Pick an item from the {@link #queue}.
+     * Put a task from the timer into the queue, if there is room.
+     * 
+     * <p>Unlike {@link #submit(Futuroid)}, this never blocks
+     * and never executes the task in the calling thread.</p>
      * 
-     * @param timeout number of milliseconds to wait
-     * @return a new call or {@code null} if the worker thread should terminate
+     * @param future task, which has not been submitted yet
+     * @return {@code false} if the task has been cancelled instead
      */
-    private synchronized Futuroid<?, ?> dequeue(long timeout) {
+    boolean fire(Futuroid<?,?> future) {
+        if (closed) {
+            cancelled(future, null);
+            return false;
+        }
+        if (room != null && !room.tryAcquire()) {
+            rejected.increment();
+            cancelled(future, new QueueFull(capacity));
+            return false;
+        }
+        enqueue(future);
         try {
-            while (queue.isEmpty()) {
-                wait(timeout);
-                
-                if (timeout <= 0 && queue.isEmpty()) {
-                    // non-zombie thread revived
-                    return null;
-                }
-            }
-        } catch (InterruptedException ex) {
-            return null;
+            checkClosed(Collections.singletonList(future));
+            return true;
+        } catch (IllegalStateException ex) {
+            return false;
         }
-
-        return queue.poll();
     }
-
+    
     /**
-     * Low-level submitting method for a fresh future.
+     * Create a thread using the pool's factory.
+     * 
+     * @param runnable body of the thread
+     * @return a new thread, which has not been started
+     */
+    Thread newThread(Runnable runnable) {
+        return factory.newThread(runnable);
+    }
+    
+    /**
+     * Submit a computation with a priority.
+     * 
+     * <p>Tasks with a higher priority are executed first. To prevent
+     * starvation, a queued task gains one priority level per every
+     * {@linkplain Builder#aging aging} period. Internally, the priority
+     * is a virtual deadline {@code priority * aging} before the submission,
+     * so tasks with a priority and tasks with a deadline share one queue
+     * and all of them go before tasks without either. Still, a worker takes
+     * a task without either after every few ranked ones, so that
+     * plain tasks do not starve.</p>
+     * 
+     * <p>A thread that calls {@link Futuroid#get()} on a queued task
+     * with a priority boosts the task to the head of the queue.</p>
      * 
      * @param <T> type of the returned value
      * @param <E> type of allowed checked exception
-     * @param future instance that will NEVER be submitted to another pool
+     * @param catchable class which contains E
+     * @param task computation to be performed
+     * @param priority higher number means sooner execution
+     * @return a future that holds the computation result
+     * @throws IllegalStateException if the task does not fit
+     * into a bounded queue
      */
-    synchronized <T,E extends Exception> void submit(Futuroid<T,E> future) {
-
-        queue.add(future);
+    public <T,E extends Exception> Futuroid<T,E> submit(
+            Class<E> catchable, Call<T,E> task, int priority) {
+        long shift;
+        try {
+            shift = Math.multiplyExact(priority, aging);
+        } catch (ArithmeticException ex) {
+            shift = priority < 0 ? -MAX_SHIFT : MAX_SHIFT;
+        }
+        shift = Math.max(-MAX_SHIFT, Math.min(shift, MAX_SHIFT));
         
-        if (waiting == 0) {
-            if (!fixed) {
-                startThreads(1, false);
+        Futuroid<T,E> fut = new Futuroid<>(task, catchable);
+        fut.rank = rank(System.nanoTime() - shift);
+        submit(fut);
+        return fut;
+    }
+    
+    /**
+     * Rank of a task, which somebody waits for.
+     */
+    private static final long BOOSTED = Long.MIN_VALUE;
+    
+    /**
+     * Move a queued ranked task to the head of the queue.
+     * 
+     * <p>Called when a thread starts to wait for the task, so that
+     * a high-priority thread is not held up by a low-priority task.</p>
+     * 
+     * @param future task that may be still in {@link #ranked}
+     */
+    void boost(Futuroid<?,?> future) {
+        if (future.rank == BOOSTED || !ranked.remove(future)) {
+            return;
+        }
+        future.rank = BOOSTED;
+        ranked.add(future);
+        if (exitting) {
+            if (ranked.remove(future) && taken(future)) {
+                cancelled(future, null);
             }
         } else {
-            notify();
+            wakeWorker();
         }
     }
+    
+    /**
+     * Longest distance of a deadline from now, so that the deadline
+     * can be compared with {@link System#nanoTime()} by a subtraction.
+     */
+    private static final long MAX_AHEAD = Long.MAX_VALUE / 2;
+    
+    /**
+     * Largest shift of a virtual deadline due to a priority, so that
+     * ranks stay comparable with deadlines up to {@link #MAX_AHEAD}.
+     */
+    private static final long MAX_SHIFT = MAX_AHEAD / 2;
+    
+    /**
+     * Convert a wall-clock instant to the {@link System#nanoTime()} scale.
+     * 
+     * <p>Instants in the past map to the current time, instants too
+     * far ahead to {@link #MAX_AHEAD} from now. The result is never
+     * {@link Futuroid#NO_DEADLINE}.</p>
+     * 
+     * @param instant any instant
+     * @return a number comparable with {@link System#nanoTime()}
+     */
+    static long nanoTime(Instant instant) {
+        long now = System.nanoTime();
+        Instant wall = Instant.now();
+        long nanos;
+        try {
+            nanos = Duration.between(wall, instant).toNanos();
+        } catch (ArithmeticException ex) {
+            nanos = instant.isBefore(wall) ? 0 : MAX_AHEAD;
+        }
         
+        // Both numbers are in range, the sum may only wrap around
+        long deadline = now + Math.max(0, Math.min(nanos, MAX_AHEAD));
+        return deadline != Futuroid.NO_DEADLINE ? deadline : deadline - 1;
+    }
+    
+    /**
+     * Number of tasks which were still queued at their deadline.
+     */
+    private final LongAdder missed = new LongAdder();
+    
+    /**
+     * Number of tasks which were still queued at their deadline.
+     * 
+     * <p>This includes tasks which started late
+     * and tasks which have been expired.</p>
+     * 
+     * @return non-negative number
+     */
+    public long missed() {
+        return missed.sum();
+    }
+    
     /**
      * Submit a new computation and with a checked exception.
      * 
@@ -182,6 +1846,9 @@ try {
      * @param catchable class which contains E
      * @param task computation to be performed
      * @return a future that holds the computation result
+     * @throws IllegalStateException if the task does not fit
+     * into a bounded queue
+     * @see #offer(Class, Call)
      */
     public <T,E extends Exception> Futuroid<T,E>
             submit(Class<E> catchable, Call<T,E> task) {
@@ -189,59 +1856,453 @@ try {
         submit(fut);
         return fut;
     }
+    
+    /**
+     * Submit a new computation, reporting a full queue by an exception.
+     * 
+     * <p>This is the same as {@link #submit(Class, Call)},
+     * but {@link Overflow#REJECT} and {@link Overflow#BLOCK}
+     * policies throw a checked {@link QueueFull}.</p>
+     * 
+     * @param <T> type of the returned value
+     * @param <E> type of allowed checked exception
+     * @param catchable class which contains E
+     * @param task computation to be performed
+     * @return a future that holds the computation result
+     * @throws QueueFull if the task does not fit into the queue
+     * @throws InterruptedException if the submitter is interrupted
+     * while waiting for room in the queue
+     */
+    public <T,E extends Exception> Futuroid<T,E>
+            offer(Class<E> catchable, Call<T,E> task)
+            throws QueueFull, InterruptedException {
+        Futuroid<T,E> fut = new Futuroid<>(task, catchable);
+        offer(fut);
+        return fut;
+    }
+
+    /**
+     * Submit a batch of computations with a checked exception.
+     * 
+     * <p>This is equivalent to calling {@link #submit(Class, Call)}
+     * for each task, but the whole batch is enqueued at once
+     * and only as many workers are woken up as needed. At most one new
+     * thread per processor is started for the whole batch.</p>
+     * 
+     * @param <T> type of the returned value
+     * @param <E> type of allowed checked exception
+     * @param catchable class which contains E
+     * @param tasks computations to be performed
+     * @return futures in the same order as the {@code tasks}
+     */
+    public <T,E extends Exception> List<Futuroid<T,E>>
+            submitAll(Class<E> catchable,
+                    Collection<? extends Call<T,E>> tasks) {
+        
+        List<Futuroid<T,E>> futs = new ArrayList<>(tasks.size());
+        for (Call<T,E> task : tasks) {
+            futs.add(new Futuroid<>(task, catchable));
+        }
+        submitAll(futs);
+        return futs;
+    }
 
     /**
-     * Submit a legacy {@link Callable}.
+     * Submit a legacy {@link Callable}.
+     * 
+     * @param <T> type of the returned value
+     * @param task computation to be performed
+     * @return a future that holds the computation result
+     * and throws the exception thrown by the task
+     */
+    public <T> Futurex<T> submit(Callable<T> task) {
+        Futurex<T> fut = new Futurex<>(new LegacyCall<>(task));
+        submit(fut);
+        return fut;
+    }
+            
+    /**
+     * Submit a legacy {@link Runnable}.
+     * 
+     * @param task computation to be performed
+     * @return a future that holds the computation result,
+     * returns {@linkplain Future#get() null} and
+     * and throws the exception thrown by the task
+     */
+    public Futurun<Void> submit(Runnable task) {
+        Futurun<Void> fut = new Futurun<>(new LegacyRun(task));
+        submit(fut);
+        return fut;
+    }
+            
+    /**
+     * Number of slots for idle {@link Carrier}s, a power of 2.
+     */
+    private static final int CARRIERS = 256;
+    
+    /**
+     * Number of slots tried when taking or returning a carrier.
+     */
+    private static final int CARRIER_PROBES = 8;
+    
+    /**
+     * Idle carriers ready for reuse, empty slots are {@code null}.
+     * 
+     * <p>A slot holds a single object and is changed by CAS only,
+     * so unlike a linked free-list it does not suffer from ABA.
+     * Threads probe a few slots from a random position, so the
+     * submitters find carriers returned by the workers.</p>
+     */
+    private final AtomicReferenceArray<Carrier> carriers
+            = new AtomicReferenceArray<>(CARRIERS);
+    
+    /**
+     * Take an idle carrier, or create a new one.
+     * 
+     * @return a non-{@code null} carrier in the
+     *  {@link Future.Status#QUEUED} state
+     */
+    Carrier carrier() {
+        int start = ThreadLocalRandom.current().nextInt();
+        for (int i = 0; i < CARRIER_PROBES; i++) {
+            int slot = (start + i) & (CARRIERS - 1);
+            Carrier carrier = carriers.get(slot);
+            if (carrier != null
+                    && carriers.compareAndSet(slot, carrier, null)) {
+                return carrier;
+            }
+        }
+        return new Carrier();
+    }
+    
+    /**
+     * Return a carrier for reuse, unless all probed slots are full.
+     * 
+     * @param carrier carrier nobody refers to
+     */
+    private void recycle(Carrier carrier) {
+        carrier.clear();
+        int start = ThreadLocalRandom.current().nextInt();
+        for (int i = 0; i < CARRIER_PROBES; i++) {
+            int slot = (start + i) & (CARRIERS - 1);
+            if (carriers.get(slot) == null
+                    && carriers.compareAndSet(slot, null, carrier)) {
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Give up a carrier and recycle it if nobody else uses it.
+     * 
+     * @param carrier carrier the caller will not touch anymore
+     */
+    private void released(Carrier carrier) {
+        if (carrier.release()) {
+            recycle(carrier);
+        }
+    }
+    
+    /**
+     * Execute a legacy {@link Runnable}, nobody waits for its end.
+     * 
+     * <p>Unlike {@link #submit(Runnable)}, no future is returned.
+     * The task travels in a recycled carrier, so the only allocation
+     * is the queue node. Exceptions thrown by the task are logged.</p>
+     * 
+     * @param task computation to be performed
+     * @throws IllegalStateException if the task is rejected
+     */
+    public void execute(Runnable task) {
+        submit(carrier().carry(task));
+    }
+    
+    /**
+     * Execute a computation, nobody waits for its result.
+     * 
+     * @param <E> type of allowed checked exception
+     * @param catchable class which contains E
+     * @param task computation to be performed
+     * @throws IllegalStateException if the task is rejected
+     * @see #execute(Runnable)
+     */
+    public <E extends Exception> void execute(
+            Class<E> catchable, Call<?,E> task) {
+        submit(carrier().carry(catchable, task, true));
+    }
+    
+    /**
+     * Submit a computation in a future that can be {@linkplain
+     * #recycle(Futuroid) recycled} after the result has been consumed.
+     * 
+     * @param <T> type of the returned value
+     * @param <E> type of allowed checked exception
+     * @param catchable class which contains E
+     * @param task computation to be performed
+     * @return a future that holds the computation result
+     * @throws IllegalStateException if the task is rejected
+     */
+    @SuppressWarnings("unchecked")
+    public <T,E extends Exception> Futuroid<T,E>
+            submitReusable(Class<E> catchable, Call<T,E> task) {
+        Carrier carrier = carrier().carry(catchable, task, false);
+        submit(carrier);
+        return (Futuroid<T,E>) (Futuroid<?,?>) carrier;
+    }
+    
+    /**
+     * Hand a consumed future back, so that another task can reuse it.
+     * 
+     * <p>The caller must not touch the future, once it has been recycled.
+     * No other thread may wait for it or refer to it either.</p>
+     * 
+     * @param future future returned by
+     * {@link #submitReusable(Class, Call)}
+     * @return {@code false} if the future is not reusable
+     * or not {@link Future.Status#DONE}
+     */
+    public boolean recycle(Futuroid<?,?> future) {
+        // A dead entry may still be linked in the queue
+        if (future instanceof Carrier && !future.dead()
+                && future.status() == Future.Status.DONE) {
+            Carrier carrier = (Carrier) future;
+            if (!carrier.disposable) {
+                released(carrier);
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * View of this pool as an {@link ExecutorService}.
+     * 
+     * <p>Tasks submitted through the view go to the same queue and are
+     * executed by the same workers as all other tasks. Shutting down
+     * the view {@linkplain #shutdownGracefully(long) closes} the pool
+     * and the queued tasks are finished. {@code shutdownNow()} returns
+     * only the tasks submitted through the view
+     * or by {@link #execute(Runnable)}. Threads blocked in
+     * {@code invokeAll} or {@code invokeAny} do not help the workers,
+     * so do not call them from a task of this pool.</p>
+     * 
+     * @return a non-{@code null} view of this pool
+     */
+    public ExecutorService asExecutorService() {
+        return new ExecutorView(this);
+    }
+    
+    /**
+     * The pool does not accept new tasks.
+     */
+    private volatile boolean closed = false;
+    
+    /**
+     * The pool is currently in exitting state, workers stop immediately.
+     */
+    private volatile boolean exitting = false;
+    
+    /**
+     * Monitor notified when the pool is closed or a thread terminates.
+     */
+    private final Object terminated = new Object();
+    
+    /**
+     * Determines if the thread pool is able to handle new tasks.
      * 
-     * @param <T> type of the returned value
-     * @param task computation to be performed
-     * @return a future that holds the computation result
-     * and throws the exception thrown by the task
+     * @return {@code false} until someone calls {@link #shutdown()},
+     * {@link #shutdownNow()} or {@link #shutdownGracefully(long)}
      */
-    public synchronized <T> Futurex<T> submit(Callable<T> task) {
-        Futurex<T> fut = new Futurex<>(new LegacyCall<>(task));
-        submit(fut);
-        return fut;
+    public boolean exitting() {
+        return closed;
     }
-            
+    
     /**
-     * Submit a legacy {@link Runnable}.
+     * Stop accepting new tasks, idle workers terminate.
      * 
-     * @param task computation to be performed
-     * @return a future that holds the computation result,
-     * returns {@linkplain Future#get() null} and
-     * and throws the exception thrown by the task
+     * <p>Workers finish all queued tasks before they terminate,
+     * unless {@link #exitting} is set too.</p>
      */
-    public synchronized Futurun<Void> submit(Runnable task) {
-        Futurun<Void> fut = new Futurun<>(new LegacyRun(task));
-        submit(fut);
-        return fut;
+    void close() {
+        closed = true;
+        wheel.close();
+        
+        // Running tasks keep their limits until the last worker terminates
+        if (live.get() == 0) {
+            wheel.stop();
+        }
+        while (wakeWorker()) {
+            // wake up all idle workers
+        }
+        synchronized (terminated) {
+            terminated.notifyAll();
+        }
     }
-            
+    
     /**
-     * The pool is currently in exitting state.
+     * Reject tasks if the pool has been closed.
+     * 
+     * <p>Workers may have terminated before the tasks were enqueued,
+     * so the tasks are removed from the queue, or from the slot of
+     * the worker they have been handed to, and cancelled.</p>
+     * 
+     * @param futures tasks that have been put into the shared queue
+     * @throws IllegalStateException if any task has been rejected
      */
-    private boolean exitting = false;
+    private void checkClosed(Collection<? extends Futuroid<?,?>> futures) {
+        if (!closed) {
+            return;
+        }
+        
+        Worker worker = stealing ? current.get() : null;
+        boolean removed = futures.isEmpty();
+        for (Futuroid<?,?> future : futures) {
+            if ((queue.remove(future) || ranked.remove(future)
+                    || (worker != null && worker.local.remove(future))
+                    || unhand(future))
+                    && taken(future)) {
+                cancelled(future, null);
+                removed = true;
+            }
+        }
+        if (removed) {
+            throw new IllegalStateException("Pool has been shut down.");
+        }
+    }
     
     /**
-     * Determines if the thread pool is able to handle new tasks.
+     * Take a task back from the {@link Worker#handed} slot of any worker.
      * 
-     * @return {@code false} until someone calls {@link #shutdown()}
+     * @param future task that may have been handed to a worker
+     * @return {@code true} if the task has been taken back
      */
-    public boolean exitting() {
-        return exitting;
+    private boolean unhand(Futuroid<?,?> future) {
+        if (handoff) {
+            for (Worker worker : pool) {
+                if (worker.handed.compareAndSet(future, null)) {
+                    return true;
+                }
+            }
+        }
+        return false;
     }
     
     /**
      * Interrupt all {@link Future.Status#RUNNING} tasks and stop worker threads.
+     * 
+     * <p>This is {@link #shutdownNow()}, which waits
+     * until all worker threads terminate.</p>
      */
     public void shutdown() {
+        shutdownNow();
+        
+        boolean interrupted = false;
+        while (true) {
+            try {
+                awaitTermination(0);
+                break;
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Stop accepting tasks, cancel queued tasks and interrupt running tasks.
+     * 
+     * <p>All {@link Future.Status#QUEUED} tasks are cancelled in a single
+     * pass, their {@link Future#get()} throws an {@link InterruptedException}.
+     * This method does not wait for the running tasks,
+     * use {@link #awaitTermination(long)} for that.</p>
+     * 
+     * @return tasks which have been cancelled before they started
+     */
+    public List<Futuroid<?,?>> shutdownNow() {
         exitting = true;
-
-        while (working()) {
-            for (Thread thread : pool) {
-                thread.interrupt();
+        close();
+        
+        List<Futuroid<?,?>> cancelled = new ArrayList<>();
+        Futuroid<?,?> task;
+        while ((task = ranked.pollFirst()) != null) {
+            if (taken(task)) {
+                cancelled.add(task);
+            }
+        }
+        while ((task = queue.poll()) != null) {
+            if (taken(task)) {
+                cancelled.add(task);
+            }
+        }
+        if (stealing) {
+            for (Worker worker : pool) {
+                while ((task = worker.local.poll()) != null) {
+                    if (taken(task)) {
+                        cancelled.add(task);
+                    }
+                }
+            }
+        }
+        if (handoff) {
+            for (Worker worker : pool) {
+                task = worker.handed.getAndSet(null);
+                if (task != null && taken(task)) {
+                    cancelled.add(task);
+                }
+            }
+        }
+        for (Futuroid<?,?> future : cancelled) {
+            cancelled(future, null);
+        }
+        
+        for (Worker worker : pool) {
+            worker.thread.interrupt();
+        }
+        return cancelled;
+    }
+    
+    /**
+     * Stop accepting tasks, finish the queued ones and wait for the workers.
+     * 
+     * @param timeOut number of milliseconds to wait, {@code 0} for ever
+     * @return {@code true} if all threads have terminated in time
+     * @throws InterruptedException if the current thread is interrupted
+     */
+    public boolean shutdownGracefully(long timeOut)
+            throws InterruptedException {
+        close();
+        return awaitTermination(timeOut);
+    }
+    
+    /**
+     * Wait until the pool is shut down and all worker threads terminate.
+     * 
+     * <p>The current thread sleeps, it does not actively check the state.</p>
+     * 
+     * @param timeOut number of milliseconds to wait, {@code 0} for ever
+     * @return {@code true} if the pool has terminated,
+     * {@code false} if the time ran out
+     * @throws InterruptedException if the current thread is interrupted
+     */
+    public boolean awaitTermination(long timeOut)
+            throws InterruptedException {
+        
+        long deadline = System.currentTimeMillis() + timeOut;
+        synchronized (terminated) {
+            while (!closed || live.get() > 0) {
+                if (timeOut <= 0) {
+                    terminated.wait();
+                } else {
+                    long remains = deadline - System.currentTimeMillis();
+                    if (remains <= 0) {
+                        return false;
+                    }
+                    terminated.wait(remains);
+                }
             }
+            return true;
         }
     }
     
@@ -251,21 +2312,16 @@ try {
      * <p>Please note that a worker thread may be looking for a new task,
      * doing some maintenance even if no actual computation is going on.</p>
      * 
-     * @return {@code false} if all worker threads are sleeping
+     * @return {@code false} if all worker threads have terminated
      */
     public boolean working() {
-        for (Thread thread : pool) {
-            if (thread.isAlive()) {
-                return true;
-            }
-        }
-        return false;
+        return live.get() > 0;
     }
     
     /**
      * Number of waiting worker threads.
      */
-    private int waiting = 0;
+    private final AtomicInteger waiting = new AtomicInteger();
 
     /**
      * Number of threads waiting for a new task.
@@ -273,7 +2329,21 @@ try {
      * @return non-negative number
      */
     public int waiting() {
-        return waiting;
+        return waiting.get();
+    }
+    
+    /**
+     * Number of worker threads executing a task.
+     */
+    private final AtomicInteger busy = new AtomicInteger();
+    
+    /**
+     * Number of threads executing a task.
+     * 
+     * @return non-negative number
+     */
+    public int busy() {
+        return busy.get();
     }
 
     /**
@@ -285,6 +2355,62 @@ try {
          * Zombie thread waits for the {@link #queue} indefinitely.
          */
         private final boolean zombie;
+        
+        /**
+         * Thread running this worker.
+         */
+        private volatile Thread thread;
+        
+        /**
+         * Tasks submitted by this worker in the work-stealing mode.
+         * 
+         * <p>The owner uses the head (LIFO), thieves use the tail (FIFO).</p>
+         */
+        private final ConcurrentLinkedDeque<Futuroid<?,?>> local
+                = stealing ? new ConcurrentLinkedDeque<>() : null;
+        
+        /**
+         * Tasks drained from the shared queue, reserved for this worker.
+         * 
+         * <p>Items between {@link #drainedFrom} (inclusive) and
+         * {@link #drainedTo} (exclusive) have not been executed yet.</p>
+         */
+        private final Futuroid<?,?>[] drained
+                = drain > 1 && !stealing ? new Futuroid<?,?>[drain] : null;
+        
+        private int drainedFrom = 0;
+        
+        private int drainedTo = 0;
+        
+        /**
+         * Worker is parked and nobody has woken it up yet.
+         */
+        private final AtomicBoolean parked = new AtomicBoolean();
+        
+        /**
+         * Task handed directly to this worker, {@code null} if none.
+         * 
+         * @see ThreadPool#handOff(Futuroid)
+         */
+        private final AtomicReference<Futuroid<?,?>> handed
+                = handoff ? new AtomicReference<>() : null;
+        
+        /**
+         * Number of {@link #ranked} tasks taken since the last task
+         * without a rank.
+         */
+        private int streak = 0;
+        
+        /**
+         * Task being executed, {@code null} if none.
+         */
+        private Futuroid<?,?> running;
+        
+        /**
+         * Worker is {@linkplain #help(Futuroid) helping}
+         * while it waits for a future.
+         */
+        private volatile boolean joining = false;
 
         /**
          * Default constructor initializes the fields.
@@ -294,39 +2420,445 @@ try {
             this.zombie = zombie;
         }
         
+        /**
+         * Unpark the worker, unless someone else did it already.
+         * 
+         * @return {@code true} if this call has woken the worker up
+         */
+        boolean wake() {
+            if (parked.compareAndSet(true, false)) {
+                LockSupport.unpark(thread);
+                return true;
+            }
+            return false;
+        }
+        
+        /**
+         * Pick a task from any source without waiting.
+         * 
+         * @return a task or {@code null} if there is nothing to do
+         */
+        private Futuroid<?, ?> poll() {
+            if (handoff && handed.get() != null) {
+                Futuroid<?, ?> task = handed.getAndSet(null);
+                if (task != null) {
+                    return task;
+                }
+            }
+            if (streak < RANKED_STREAK && !ranked.isEmpty()) {
+                Futuroid<?, ?> task = ranked.pollFirst();
+                if (task != null) {
+                    streak++;
+                    return task;
+                }
+            }
+            
+            Futuroid<?, ?> task = pollUnranked();
+            if (task != null) {
+                streak = 0;
+            } else if (!ranked.isEmpty()) {
+                task = ranked.pollFirst();
+                streak = 1;
+            }
+            return task;
+        }
+        
+        /**
+         * Pick a task without a rank from any source without waiting.
+         * 
+         * @return a task or {@code null} if there is none
+         */
+        private Futuroid<?, ?> pollUnranked() {
+            if (!stealing) {
+                return drained == null ? queue.poll() : pollDrained();
+            }
+            
+            Futuroid<?, ?> task = local.pollFirst();
+            if (task == null) {
+                task = queue.poll();
+                
+                // Extra tasks go to our deque, others may steal them
+                Futuroid<?, ?> extra;
+                for (int i = 1; task != null && i < drain
+                        && (extra = queue.poll()) != null; i++) {
+                    local.addLast(extra);
+                }
+            }
+            if (task == null) {
+                for (Worker victim : pool) {
+                    if (victim != this) {
+                        task = victim.local.pollLast();
+                        if (task != null) {
+                            break;
+                        }
+                    }
+                }
+            }
+            return task;
+        }
+        
+        /**
+         * Pick a task from the {@link #drained} buffer, refill it if empty.
+         * 
+         * @return a task or {@code null} if the shared queue is empty
+         */
+        private Futuroid<?, ?> pollDrained() {
+            if (drainedFrom == drainedTo) {
+                drainedFrom = drainedTo = 0;
+                Futuroid<?, ?> task;
+                while (drainedTo < drained.length
+                        && (task = queue.poll()) != null) {
+                    drained[drainedTo++] = task;
+                }
+                if (drainedTo == 0) {
+                    return null;
+                }
+            }
+            
+            Futuroid<?, ?> task = drained[drainedFrom];
+            drained[drainedFrom++] = null;
+            return task;
+        }
+        
+        /**
+         * {@linkplain #poll() Pick} a task, park if there is none.
+         * 
+         * <p>The worker first registers itself in {@link #idle} and only then
+         * re-checks all queues. A submitter does the same in reverse
+         * order, therefore no task can be left behind unnoticed.</p>
+         * 
+         * <p>Zombies wait for ever, other threads
+         * only for the {@link #keepAlive} period.</p>
+         * 
+         * @return a new call or {@code null} if the worker should terminate
+         */
+        private Futuroid<?, ?> dequeue() {
+            Futuroid<?, ?> task = poll();
+            if (task != null || (!zombie && keepAlive <= 0)) {
+                return task;
+            }
+            
+            long deadline = System.nanoTime()
+                    + MILLISECONDS.toNanos(keepAlive);
+            
+            int sees = waiting.incrementAndGet();
+            if (L.isLoggable(FINE)) {
+                L.log(FINE, "Worker #{0} sees {1} workers.",
+                        new Object[] {hashCode(), sees});
+            }
+            try {
+                while (!closed) {
+                    parked.set(true);
+                    idle.add(this);
+                    
+                    task = poll();
+                    if (task != null || closed) {
+                        // The entry in "idle" becomes stale
+                        if (!parked.compareAndSet(true, false)
+                                && task == null) {
+                            // Woken up meanwhile, maybe with a hand-off
+                            task = poll();
+                        }
+                        return task;
+                    }
+                    
+                    int spins = 0;
+                    while (parked.get() && !closed) {
+                        long remains = zombie ? Long.MAX_VALUE
+                                : deadline - System.nanoTime();
+                        if (remains <= 0) {
+                            if (parked.compareAndSet(true, false)) {
+                                return null;
+                            }
+                            break;
+                        }
+                        
+                        if (idling == Idle.SPIN
+                                || (idling != Idle.BLOCK && spins < SPINS)) {
+                            spins++;
+                            Thread.onSpinWait();
+                            continue;
+                        }
+                        if (idling == Idle.YIELD) {
+                            Thread.yield();
+                            continue;
+                        }
+                        if (zombie) {
+                            LockSupport.park(this);
+                        } else {
+                            LockSupport.parkNanos(this, remains);
+                        }
+                        
+                        // Stale interrupts must not make us spin
+                        Thread.interrupted();
+                    }
+                    
+                    task = poll();
+                    if (task != null) {
+                        return task;
+                    }
+                }
+                return null;
+                
+            } finally {
+                waiting.decrementAndGet();
+                if (L.isLoggable(FINEST)) {
+                    L.log(FINEST, "Worker #{0} stopped waiting.", hashCode());
+                }
+            }
+        }
+        
         @Override
         public void run() {
+            current.set(this);
+            
+            do {
+                work();
+                live.decrementAndGet();
+                
+                // A submitter may have seen no room for a new thread
+            } while (!exitting && pending() && reserve());
+            
+            // Only a closed pool hands a task to an exiting worker
+            Futuroid<?, ?> left = handoff ? handed.getAndSet(null) : null;
+            if (left != null && taken(left)) {
+                cancelled(left, null);
+            }
+            pool.remove(this);
+            retired.increment();
+            if (closed) {
+                if (live.get() == 0) {
+                    wheel.stop();
+                }
+                synchronized (terminated) {
+                    terminated.notifyAll();
+                }
+            }            
+            if (L.isLoggable(FINE)) {
+                L.log(FINE, "Worker #{0} is exiting.", hashCode());
+            }
+        }
+        
+        /**
+         * Execute a dequeued task and count its outcome.
+         * 
+         * @param task task taken from the queue
+         */
+        private void perform(Futuroid<?, ?> task) {
+            if (task.deadline != Futuroid.NO_DEADLINE && overdue(task)) {
+                return;
+            }
+            Futuroid<?, ?> parent = running;
+            running = task;
+            // A carrier is not reused until the worker releases it
+            Carrier carrier = task instanceof Carrier ? (Carrier) task : null;
+            boolean disposable = carrier != null && carrier.disposable;
+            
+            Wheel.Timer limit = task.limit > 0 ? wheel.limit(task) : null;
+            if (!measured && !Flight.executions()) {
+                task.execute();
+            } else {
+                execute(task);
+            }
+            if (limit != null) {
+                limit.cancel();
+            }
+            executed(task);
+            
+            if (carrier != null) {
+                if (disposable && carrier.thrown != null
+                        && L.isLoggable(WARNING)) {
+                    L.log(WARNING, "Task failed: " + task, carrier.thrown);
+                }
+                released(carrier);
+            }
+            running = parent;
+        }
+        
+        /**
+         * Count a missed deadline and expire the task if configured so.
+         * 
+         * @param task task with a deadline
+         * @return {@code true} if the task has been cancelled
+         */
+        private boolean overdue(Futuroid<?, ?> task) {
+            if (System.nanoTime() - task.deadline <= 0) {
+                return false;
+            }
+            missed.increment();
+            if (!expire) {
+                return false;
+            }
+            long budget = (task.deadline - task.enqueued) / 1_000_000L;
+            cancelled(task, new TimeoutException(Math.max(0L, budget)));
+            return true;
+        }
+        
+        /**
+         * Execute other tasks until a future is done.
+         * 
+         * <p>If there is nothing to do, the worker parks until the future
+         * is done, or until a new task {@linkplain #wake() wakes} it up.</p>
+         * 
+         * @param future future that this worker waits for
+         * @throws InterruptedException if the worker is interrupted
+         */
+        private void help(Futuroid<?, ?> future) throws InterruptedException {
+            
+            // Searching the queue would take a linear time
+            if (future.owner == ThreadPool.this
+                    && future.status() == Future.Status.QUEUED
+                    && future.claim()) {
+                died();
+                nest(future);
+                return;
+            }
+            
+            boolean woken = false;
+            joining = true;
+            try {
+                while (future.status() != Future.Status.DONE) {
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                    Futuroid<?, ?> task = poll();
+                    if (task == null && !closed) {
+                        parked.set(true);
+                        idle.add(this);
+                        
+                        task = poll();
+                        if (task == null) {
+                            waiting.incrementAndGet();
+                            future.park();
+                            waiting.decrementAndGet();
+                        }
+                        // The entry in "idle" becomes stale
+                        woken = !parked.compareAndSet(true, false);
+                    }
+                    if (task != null) {
+                        woken = false;
+                        if (taken(task)) {
+                            nest(task);
+                        }
+                    }
+                }
+            } finally {
+                joining = false;
+                
+                // Pass on a wake-up, which was meant for a new task
+                if (woken && pending()) {
+                    signal(1);
+                }
+            }
+        }
+        
+        /**
+         * Execute a task on behalf of the {@link #running} one,
+         * which waits for a future.
+         * 
+         * <p>An interrupt, which has been aimed at the nested task, is
+         * cleared. The interrupt flag is set again only if it had been set
+         * before, or if the waiting task itself has been interrupted
+         * in the meantime.</p>
+         * 
+         * @param task task taken from the queue
+         */
+        private void nest(Futuroid<?, ?> task) {
+            Futuroid<?, ?> parent = running;
+            int hits = parent != null ? parent.interrupts : 0;
+            boolean own = Thread.interrupted();
+            perform(task);
+            Thread.interrupted();
+            
+            if (own || exitting
+                    || (parent != null && parent.interrupts != hits)) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        
+        /**
+         * Execute a task and report it to the {@link #probe},
+         * to the histograms and to the {@link Flight} recorder.
+         * 
+         * @param task task taken from the queue
+         */
+        private void execute(Futuroid<?, ?> task) {
+            long started = System.nanoTime();
+            long waited = started - task.enqueued;
+            if (probe != null) {
+                probe.started(task, waited);
+            }
+            Flight.TaskFinished event = Flight.started(task, waited);
+            
+            task.execute();
+            
+            long ran = System.nanoTime() - started;
+            boolean failed = task.thrown != null;
+            Flight.finished(event, failed);
+            // Futuroid keeps only milliseconds, the worker measures nanos
+            if (runTime != null) {
+                queueWait.record(waited);
+                runTime.record(ran);
+            }
+            if (probe != null) {
+                probe.finished(task, waited, ran, failed);
+            }
+        }
+        
+        /**
+         * Execute tasks until the worker should terminate.
+         */
+        private void work() {
             while (!exitting) {
+                if (L.isLoggable(FINEST)) {
+                    L.log(FINEST, "Worker #{0} is about to wait for a task.",
+                            hashCode());
+                }
+                Futuroid<?, ?> task = dequeue();
+                if (L.isLoggable(FINER)) {
+                    L.log(FINER, "Worker #{0} got task: {1}",
+                            new Object[] {hashCode(), task});
+                }
 
-                Futuroid<?, ?> task;
-
-                synchronized (ThreadPool.this) {
+                if (task != null) {
+                    if (!taken(task)) {
+                        continue;
+                    }
+                    if (L.isLoggable(FINE)) {
+                        L.log(FINE, "Worker #{0} starts executing: {1}",
+                                new Object[] {hashCode(), task});
+                    }
+                    busy.incrementAndGet();
                     try {
-                        L.log(FINEST, "Worker #" + hashCode()
-                                + " is about to wait for a task.");
-                        waiting++;
-                        L.log(FINE, "Worker #" + hashCode()
-                                + " sees " + waiting + " workers.");
-                        task = dequeue(zombie ? 0 : 3000L);
-                        L.log(FINER, "Worker #" + hashCode()
-                                + " got task: " + task);
+                        perform(task);
                     } finally {
-                        waiting--;
-                        L.log(FINEST, "Worker #" + hashCode()
-                                + " stopped waiting.");
+                        busy.decrementAndGet();
+                    }
+                    
+                    // Late cancel() must not affect the next task
+                    if (!exitting) {
+                        Thread.interrupted();
+                    }
+                    
+                    // Queue does not move, maybe we need a helper
+                    if (spawnDelay > 0) {
+                        grow();
                     }
-                }
-
-                if (task != null) {
-                    L.log(FINE, "Worker #" + hashCode()
-                            + " starts executing: " + task);
-                    task.execute();
                 } else {
-                    L.log(FINE, "Worker #" + hashCode()
-                            + " is exiting.");
                     return;
                 }
             }
+            
+            // Tasks reserved for this worker will never run
+            if (drained != null) {
+                while (drainedFrom < drainedTo) {
+                    Futuroid<?, ?> task = drained[drainedFrom];
+                    drained[drainedFrom++] = null;
+                    if (taken(task)) {
+                        cancelled(task, null);
+                    }
+                }
+            }
         }
     }
 
@@ -37,6 +37,7 @@ public class TimeoutException extends java.util.concurrent.TimeoutException {
     public TimeoutException(long timeOut) {
         super("Time ran out after " + timeOut + "ms.");
         this.timeOut = timeOut;
+        Flight.timeOut(timeOut);
     }
 
     public TimeoutException(long timeOut,
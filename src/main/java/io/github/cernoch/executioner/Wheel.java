@@ -0,0 +1,574 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2017 Radomír Černoch (radomir.cernoch at gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.cernoch.executioner;
+
+import io.github.cernoch.executioner.Future.Status;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed-wheel timer, which submits delayed tasks to a {@link ThreadPool}.
+ * 
+ * <p>Timers are hashed by their deadline into a ring of buckets, a single
+ * thread visits one bucket per tick and fires the timers that are due.
+ * Adding and cancelling a timer only puts it in a concurrent queue,
+ * the buckets themselves are touched by the timer thread alone.
+ * Therefore both operations take a constant time, regardless of
+ * the number of pending timers.</p>
+ * 
+ * <p>The thread starts with the first timer and parks indefinitely
+ * whenever there is no timer. Once the pool is {@linkplain #close()
+ * closed}, only the timers limiting running tasks are kept, until
+ * the last worker terminates and the wheel {@linkplain #stop() stops}.</p>
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ * @see ThreadPool#schedule(Class, Call, long)
+ * @see ThreadPool#scheduleAtFixedRate(Class, Call, long, long)
+ */
+final class Wheel implements Runnable {
+    
+    /*
+     * States of a {@link Timer}.
+     */
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+    
+    /**
+     * Entry of the wheel, which fires a future.
+     */
+    static final class Timer {
+        
+        private final Wheel wheel;
+        
+        /**
+         * Task to be submitted, or the series of a periodic task.
+         */
+        private final Futuroid<?,?> future;
+        
+        /**
+         * Periodic task, {@code null} for a one-shot timer.
+         */
+        private final Periodic<?> periodic;
+        
+        /**
+         * The timer limits the running time of the future,
+         * instead of submitting it.
+         */
+        private final boolean limit;
+        
+        /**
+         * Number of the tick, when the timer fires.
+         */
+        private final long deadline;
+        
+        /*
+         * Neighbours in the bucket, accessed by the timer thread only.
+         */
+        private Timer prev;
+        private Timer next;
+        
+        /**
+         * Index of the bucket, {@code -1} until put into the wheel.
+         */
+        private int bucket = -1;
+        
+        /**
+         * Either pending, or cancelled or expired, which happens only once.
+         */
+        private volatile int state = PENDING;
+        
+        private static final AtomicIntegerFieldUpdater<Timer> STATE
+                = AtomicIntegerFieldUpdater.newUpdater(Timer.class, "state");
+        
+        private Timer(Wheel wheel, Futuroid<?,?> future,
+                Periodic<?> periodic, boolean limit, long deadline) {
+            this.wheel = wheel;
+            this.future = future;
+            this.periodic = periodic;
+            this.limit = limit;
+            this.deadline = deadline;
+        }
+        
+        /**
+         * Prevent the timer from firing.
+         * 
+         * @return {@code false} if the timer has already fired
+         */
+        boolean cancel() {
+            if (STATE.compareAndSet(this, PENDING, CANCELLED)) {
+                wheel.cancelled.add(this);
+                return true;
+            }
+            return false;
+        }
+    }
+    
+    /**
+     * Task repeated at a fixed rate, as long as its series is not done.
+     * 
+     * <p>The next run is scheduled only after the previous one has finished,
+     * so that runs never overlap. Late runs follow each other
+     * without a delay.</p>
+     * 
+     * @param <E> type of allowed checked exception
+     */
+    private final class Periodic<E extends Exception> implements Call<Void,E> {
+        
+        private final Class<E> catchable;
+        
+        private final Call<?,E> task;
+        
+        /**
+         * Future that represents all runs, never executed itself.
+         */
+        private final Futuroid<Void,E> series;
+        
+        /**
+         * Nanoseconds between two runs.
+         */
+        private final long period;
+        
+        /**
+         * Time (from {@link System#nanoTime()}) of the next run.
+         */
+        private long next;
+        
+        private Periodic(Class<E> catchable, Call<?,E> task,
+                long first, long period) {
+            this.catchable = catchable;
+            this.task = task;
+            this.series = new Futuroid<>(this, catchable);
+            this.period = period;
+            this.next = first;
+        }
+        
+        @Override
+        public Void call() {
+            if (series.status() != Status.QUEUED) {
+                return null;
+            }
+            try {
+                task.call();
+            } catch (Throwable ex) {
+                series.aborted(ex);
+                return null;
+            }
+            next += period;
+            reschedule();
+            return null;
+        }
+        
+        /**
+         * Submit a run to the pool, which is called by the timer thread.
+         */
+        private void fire() {
+            if (pool.fire(pool.carrier().carry(catchable, this, true))) {
+                return;
+            }
+            if (closed) {
+                series.dropped(null);
+            } else {
+                next += period;
+                reschedule();
+            }
+        }
+        
+        /**
+         * Put the series back into the wheel, unless it has been cancelled.
+         */
+        private void reschedule() {
+            Timer timer = schedule(series, this, next);
+            if (series.status() != Status.QUEUED || closed) {
+                if (timer.cancel()) {
+                    series.dropped(null);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Pool that executes the fired tasks.
+     */
+    private final ThreadPool pool;
+    
+    /**
+     * Duration of one tick in nanoseconds.
+     */
+    private final long tick;
+    
+    /**
+     * Heads of the buckets, each one a doubly-linked list of timers.
+     */
+    private final Timer[] buckets;
+    
+    /**
+     * Bit-mask which turns a tick number into a bucket index.
+     */
+    private final int mask;
+    
+    /**
+     * Time (from {@link System#nanoTime()}) of the tick number zero.
+     */
+    private final long start = System.nanoTime();
+    
+    /**
+     * New timers, which are yet to be put into buckets.
+     */
+    private final Queue<Timer> added = new ConcurrentLinkedQueue<>();
+    
+    /**
+     * Cancelled timers, which are yet to be removed from buckets.
+     */
+    private final Queue<Timer> cancelled = new ConcurrentLinkedQueue<>();
+    
+    /**
+     * Number of the next tick to be processed, used by the timer thread.
+     */
+    private long ticks = 0;
+    
+    /**
+     * Number of timers in the buckets, used by the timer thread.
+     */
+    private int pending = 0;
+    
+    /**
+     * The timer thread has been started.
+     */
+    private final AtomicBoolean started = new AtomicBoolean();
+    
+    /**
+     * The timer thread, {@code null} until started.
+     */
+    private volatile Thread thread;
+    
+    /**
+     * The timer thread is parked until a timer is added.
+     */
+    private volatile boolean sleeping = false;
+    
+    /**
+     * Pending timers are to be dropped, except for the limits.
+     */
+    private volatile boolean closed = false;
+    
+    /**
+     * All pending timers are to be dropped and the thread to terminate.
+     */
+    private volatile boolean stopped = false;
+    
+    /**
+     * Create a wheel, which does not start its thread yet.
+     * 
+     * @param pool pool that executes the fired tasks
+     * @param tick duration of one tick in nanoseconds
+     * @param size number of buckets, a power of two
+     */
+    Wheel(ThreadPool pool, long tick, int size) {
+        this.pool = pool;
+        this.tick = tick;
+        this.buckets = new Timer[size];
+        this.mask = size - 1;
+    }
+    
+    /**
+     * Add a new timer.
+     * 
+     * @param future task to be submitted, or a periodic series
+     * @param periodic periodic task, {@code null} for a one-shot timer
+     * @param at time (from {@link System#nanoTime()}) to fire
+     * @return the new timer
+     */
+    Timer schedule(Futuroid<?,?> future, Periodic<?> periodic, long at) {
+        Timer timer = new Timer(this, future, periodic, false, tickAt(at));
+        future.timer = timer;
+        add(timer);
+        return timer;
+    }
+    
+    /**
+     * Add a timer, which times out a running future.
+     * 
+     * <p>The timer must be cancelled once the future finishes,
+     * the future does not remember it.</p>
+     * 
+     * @param future future, which is about to start
+     * @return the new timer
+     * @see Futuroid#timedOut()
+     */
+    Timer limit(Futuroid<?,?> future) {
+        Timer timer = new Timer(this, future, null, true,
+                tickAt(System.nanoTime() + future.limit * 1_000_000L));
+        add(timer);
+        return timer;
+    }
+    
+    /**
+     * Number of the first tick not earlier than the given time.
+     * 
+     * @param at time (from {@link System#nanoTime()})
+     * @return non-negative tick number
+     */
+    private long tickAt(long at) {
+        long due = at - start;
+        return due <= 0 ? 0 : (due + tick - 1) / tick;
+    }
+    
+    /**
+     * Pass a new timer to the timer thread, starting it if necessary.
+     * 
+     * @param timer timer which has not been added yet
+     */
+    private void add(Timer timer) {
+        added.add(timer);
+        
+        if (started.compareAndSet(false, true)) {
+            Thread t = pool.newThread(this);
+            t.setDaemon(true);
+            thread = t;
+            t.start();
+        } else if (sleeping) {
+            LockSupport.unpark(thread);
+        }
+    }
+    
+    /**
+     * Start a periodic task.
+     * 
+     * @param <E> type of allowed checked exception
+     * @param catchable class which contains E
+     * @param task computation to be repeated
+     * @param first time (from {@link System#nanoTime()}) of the first run
+     * @param period nanoseconds between two runs
+     * @return future which represents all runs
+     */
+    <E extends Exception> Futuroid<Void,E> periodic(
+            Class<E> catchable, Call<?,E> task, long first, long period) {
+        Periodic<E> periodic = new Periodic<>(catchable, task, first, period);
+        schedule(periodic.series, periodic, first);
+        return periodic.series;
+    }
+    
+    /**
+     * Drop pending timers that would submit a task,
+     * but keep limiting the running tasks.
+     */
+    void close() {
+        closed = true;
+        Thread t = thread;
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+    }
+    
+    /**
+     * Drop all pending timers and let the timer thread terminate.
+     */
+    void stop() {
+        closed = true;
+        stopped = true;
+        Thread t = thread;
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+    }
+    
+    @Override
+    public void run() {
+        boolean drained = false;
+        while (!stopped) {
+            unlinkCancelled();
+            linkAdded();
+            if (closed && !drained) {
+                dropScheduled();
+                drained = true;
+            }
+            
+            long current = (System.nanoTime() - start) / tick;
+            while (ticks <= current) {
+                expire(ticks++);
+            }
+            
+            if (pending == 0 && added.isEmpty()) {
+                sleeping = true;
+                if (added.isEmpty() && !stopped) {
+                    LockSupport.park(this);
+                }
+                sleeping = false;
+                // Empty buckets need not be visited
+                ticks = Math.max(ticks, (System.nanoTime() - start) / tick);
+            } else {
+                LockSupport.parkNanos(this,
+                        start + ticks * tick - System.nanoTime());
+            }
+        }
+        
+        Timer timer;
+        while ((timer = added.poll()) != null) {
+            drop(timer);
+        }
+        for (int i = 0; i < buckets.length; i++) {
+            while ((timer = buckets[i]) != null) {
+                unlink(timer);
+                drop(timer);
+            }
+        }
+    }
+    
+    /**
+     * Drop all linked timers, except for the limits.
+     */
+    private void dropScheduled() {
+        for (int i = 0; i < buckets.length; i++) {
+            Timer timer = buckets[i];
+            while (timer != null) {
+                Timer next = timer.next;
+                if (!timer.limit) {
+                    unlink(timer);
+                    drop(timer);
+                }
+                timer = next;
+            }
+        }
+    }
+    
+    /**
+     * Remove cancelled timers from their buckets.
+     */
+    private void unlinkCancelled() {
+        Timer timer;
+        while ((timer = cancelled.poll()) != null) {
+            if (timer.bucket >= 0) {
+                unlink(timer);
+            }
+        }
+    }
+    
+    /**
+     * Put new timers into their buckets.
+     */
+    private void linkAdded() {
+        Timer timer;
+        while ((timer = added.poll()) != null) {
+            if (timer.state != PENDING) {
+                continue;
+            }
+            if (closed && !timer.limit) {
+                drop(timer);
+                continue;
+            }
+            int bucket = (int) (Math.max(timer.deadline, ticks) & mask);
+            timer.bucket = bucket;
+            timer.prev = null;
+            timer.next = buckets[bucket];
+            if (timer.next != null) {
+                timer.next.prev = timer;
+            }
+            buckets[bucket] = timer;
+            pending++;
+        }
+    }
+    
+    /**
+     * Remove a timer from its bucket.
+     * 
+     * @param timer timer in a bucket
+     */
+    private void unlink(Timer timer) {
+        if (timer.prev != null) {
+            timer.prev.next = timer.next;
+        } else {
+            buckets[timer.bucket] = timer.next;
+        }
+        if (timer.next != null) {
+            timer.next.prev = timer.prev;
+        }
+        timer.prev = null;
+        timer.next = null;
+        timer.bucket = -1;
+        pending--;
+    }
+    
+    /**
+     * Fire all due timers from one bucket.
+     * 
+     * @param now number of the current tick
+     */
+    private void expire(long now) {
+        Timer timer = buckets[(int) (now & mask)];
+        while (timer != null) {
+            Timer next = timer.next;
+            if (timer.deadline <= now) {
+                unlink(timer);
+                if (Timer.STATE.compareAndSet(timer, PENDING, EXPIRED)) {
+                    fire(timer);
+                }
+            }
+            timer = next;
+        }
+    }
+    
+    /**
+     * Submit the task of an expired timer.
+     * 
+     * @param timer expired timer
+     */
+    private void fire(Timer timer) {
+        if (timer.limit) {
+            timer.future.timedOut();
+        } else if (timer.periodic != null) {
+            timer.periodic.fire();
+        } else {
+            timer.future.timer = null;
+            if (timer.future.status() == Status.QUEUED) {
+                pool.fire(timer.future);
+            }
+        }
+    }
+    
+    /**
+     * Cancel the task of a pending timer, when the wheel stops.
+     * 
+     * <p>The wheel stops after the last worker has terminated,
+     * therefore limits are simply forgotten.</p>
+     * 
+     * @param timer timer that will never fire
+     */
+    private void drop(Timer timer) {
+        if (timer.limit) {
+            return;
+        }
+        if (Timer.STATE.compareAndSet(timer, PENDING, EXPIRED)) {
+            timer.future.timer = null;
+            if (timer.periodic != null) {
+                timer.future.dropped(null);
+            } else {
+                pool.fire(timer.future);
+            }
+        }
+    }
+}
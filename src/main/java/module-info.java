@@ -1,4 +1,5 @@
 module io.github.cernoch.executioner {
     requires java.logging;
+    requires jdk.jfr;
     exports io.github.cernoch.executioner;
 }
\ No newline at end of file
@@ -0,0 +1,102 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2017 Radomír Černoch (radomir.cernoch at gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.cernoch.executioner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Compares {@link ThreadPool#submitAll(Class, java.util.Collection)}
+ * with calling {@link ThreadPool#submit(Class, Call)} in a loop.
+ * 
+ * <p>Not a unit test, run the {@link #main(String[])} method manually.</p>
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class BatchBenchmark {
+    
+    /**
+     * Number of tasks submitted in a single measurement.
+     */
+    private static final int TASKS = 1_000_000;
+    
+    /**
+     * Submit {@link #TASKS} empty tasks and wait until they finish.
+     * 
+     * @param batch number of tasks in a batch
+     * @param drain number of tasks a worker takes at once
+     * @param loop {@code true} submits tasks one by one
+     * @return tasks per second
+     */
+    static double measure(int batch, int drain, boolean loop)
+            throws InterruptedException {
+        
+        int cpus = Runtime.getRuntime().availableProcessors();
+        ThreadPool pool = new ThreadPool.Builder(cpus)
+                .fixed(true).drain(drain).build();
+        
+        CountDownLatch done = new CountDownLatch(TASKS);
+        List<Call<Void,RuntimeException>> tasks = new ArrayList<>(batch);
+        for (int i = 0; i < batch; i++) {
+            tasks.add(() -> {
+                done.countDown();
+                return null;
+            });
+        }
+        
+        long started = System.nanoTime();
+        for (int i = 0; i < TASKS; i += batch) {
+            if (loop) {
+                for (Call<Void,RuntimeException> task : tasks) {
+                    pool.submit(RuntimeException.class, task);
+                }
+            } else {
+                pool.submitAll(RuntimeException.class, tasks);
+            }
+        }
+        done.await();
+        long elapsed = System.nanoTime() - started;
+        
+        pool.shutdown();
+        return TASKS * 1e9 / elapsed;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        
+        // Warm-up
+        measure(1000, 1, true);
+        measure(1000, 1, false);
+        
+        System.out.printf("%8s %6s %14s %14s%n",
+                "batch", "drain", "loop tasks/s", "batch tasks/s");
+        for (int batch = 1000; batch <= 100_000; batch *= 10) {
+            for (int drain = 1; drain <= 64; drain *= 8) {
+                System.out.printf("%8d %6d %14.0f %14.0f%n", batch, drain,
+                        measure(batch, drain, true),
+                        measure(batch, drain, false));
+            }
+        }
+    }
+}
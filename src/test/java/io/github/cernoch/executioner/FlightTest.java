@@ -0,0 +1,97 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2017 Radomír Černoch (radomir.cernoch at gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.cernoch.executioner;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the {@link Flight} recorder events.
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class FlightTest {
+    
+    private static final String PREFIX = "io.github.cernoch.executioner.";
+    
+    @Test(timeout = 10000L)
+    public void recordingSeesTheLifeCycle() throws Exception {
+        Path dump = Files.createTempFile("executioner", ".jfr");
+        try (Recording recording = new Recording()) {
+            for (String name : new String[] {"TaskEnqueued", "TaskStarted",
+                    "TaskFinished", "RaceStarted", "RaceDecided", "TimeOut"}) {
+                recording.enable(PREFIX + name);
+            }
+            recording.start();
+            
+            ThreadPool pool = new ThreadPool(1, true);
+            assertEquals((Integer) 1, pool.submit(InterruptedException.class,
+                    new WaitAndReturn(0L, 1)).get());
+            try {
+                pool.submit(InterruptedException.class,
+                        new WaitAndReturn(1000L, 2)).get(10L);
+                fail("Task should not finish in time.");
+            } catch (TimeoutException ex) {
+                // expected
+            }
+            pool.shutdown();
+            
+            SpawnPool race = new SpawnPool(2, true);
+            assertEquals((Integer) 4, race.first(InterruptedException.class, 0,
+                    new WaitAndReturn(500L, 3),
+                    new WaitAndReturn(10L, 4)).get());
+            race.shutdown();
+            
+            recording.stop();
+            recording.dump(dump);
+            
+            Set<String> seen = new HashSet<>();
+            for (RecordedEvent event : RecordingFile.readAllEvents(dump)) {
+                String name = event.getEventType().getName();
+                seen.add(name);
+                if (name.equals(PREFIX + "RaceDecided")) {
+                    assertEquals(1, event.getInt("winner"));
+                    assertEquals(1, event.getInt("losers"));
+                }
+            }
+            assertTrue(seen.toString(), seen.contains(PREFIX + "TaskEnqueued"));
+            assertTrue(seen.toString(), seen.contains(PREFIX + "TaskStarted"));
+            assertTrue(seen.toString(), seen.contains(PREFIX + "TaskFinished"));
+            assertTrue(seen.toString(), seen.contains(PREFIX + "RaceStarted"));
+            assertTrue(seen.toString(), seen.contains(PREFIX + "RaceDecided"));
+            assertTrue(seen.toString(), seen.contains(PREFIX + "TimeOut"));
+            
+        } finally {
+            Files.deleteIfExists(dump);
+        }
+    }
+}
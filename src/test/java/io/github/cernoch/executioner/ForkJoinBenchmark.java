@@ -0,0 +1,168 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2017 Radomír Černoch (radomir.cernoch at gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.cernoch.executioner;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Compares {@link RecursiveCall} on a {@link ThreadPool}
+ * with {@link RecursiveTask} on a {@link ForkJoinPool}.
+ * 
+ * <p>Not a unit test, run the {@link #main(String[])} method manually.</p>
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class ForkJoinBenchmark {
+    
+    /**
+     * Size of the summed array.
+     */
+    private static final int SIZE = 10_000_000;
+    
+    /**
+     * Number of measurements of each variant.
+     */
+    private static final int ROUNDS = 20;
+    
+    /**
+     * Sum of a range in the array, computed sequentially.
+     */
+    static long sum(long[] array, int from, int to) {
+        long sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += array[i];
+        }
+        return sum;
+    }
+    
+    static class Sum extends RecursiveCall<Long, RuntimeException> {
+        private final long[] array;
+        private final int from, to, threshold;
+        
+        Sum(long[] array, int from, int to, int threshold) {
+            this.array = array;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+        
+        @Override
+        protected Long compute() throws InterruptedException {
+            if (to - from <= threshold) {
+                return sum(array, from, to);
+            }
+            int mid = (from + to) >>> 1;
+            Futuroid<Long, RuntimeException> left
+                    = fork(new Sum(array, from, mid, threshold));
+            long right = invoke(new Sum(array, mid, to, threshold));
+            return join(left) + right;
+        }
+    }
+    
+    static class FjSum extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+        
+        private final long[] array;
+        private final int from, to, threshold;
+        
+        FjSum(long[] array, int from, int to, int threshold) {
+            this.array = array;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+        
+        @Override
+        protected Long compute() {
+            if (to - from <= threshold) {
+                return sum(array, from, to);
+            }
+            int mid = (from + to) >>> 1;
+            FjSum left = new FjSum(array, from, mid, threshold);
+            left.fork();
+            long right = new FjSum(array, mid, to, threshold).compute();
+            return left.join() + right;
+        }
+    }
+    
+    /**
+     * Median time of summing the array with executioner.
+     * 
+     * @return milliseconds
+     */
+    static double executioner(ThreadPool pool, long[] array, int threshold)
+            throws InterruptedException {
+        long[] times = new long[ROUNDS];
+        for (int r = 0; r < ROUNDS; r++) {
+            long started = System.nanoTime();
+            new Sum(array, 0, array.length, threshold)
+                    .fork(pool, RuntimeException.class).get();
+            times[r] = System.nanoTime() - started;
+        }
+        return Timing.from(times).med / 1e6;
+    }
+    
+    /**
+     * Median time of summing the array with fork-join.
+     * 
+     * @return milliseconds
+     */
+    static double forkJoin(ForkJoinPool pool, long[] array, int threshold) {
+        long[] times = new long[ROUNDS];
+        for (int r = 0; r < ROUNDS; r++) {
+            long started = System.nanoTime();
+            pool.invoke(new FjSum(array, 0, array.length, threshold));
+            times[r] = System.nanoTime() - started;
+        }
+        return Timing.from(times).med / 1e6;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        ThreadPool pool = new ThreadPool.Builder(cpus)
+                .fixed(true).stealing(true).build();
+        ForkJoinPool fjp = new ForkJoinPool(cpus);
+        
+        long[] array = new long[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            array[i] = i;
+        }
+        
+        // Warm-up
+        executioner(pool, array, 10_000);
+        forkJoin(fjp, array, 10_000);
+        
+        System.out.printf("%10s %16s %16s%n",
+                "threshold", "executioner ms", "fork-join ms");
+        for (int threshold = 1_000_000; threshold >= 1_000; threshold /= 10) {
+            System.out.printf("%10d %16.2f %16.2f%n", threshold,
+                    executioner(pool, array, threshold),
+                    forkJoin(fjp, array, threshold));
+        }
+        
+        pool.shutdown();
+        fjp.shutdown();
+    }
+}
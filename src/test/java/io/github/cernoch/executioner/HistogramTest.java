@@ -0,0 +1,89 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2017 Radomír Černoch (radomir.cernoch at gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.cernoch.executioner;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the {@link Histogram} class.
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class HistogramTest {
+    
+    @Test
+    public void bucketsCoverAllValues() {
+        assertEquals(0, Histogram.bucket(-5L));
+        assertEquals(Histogram.BUCKETS - 1, Histogram.bucket(Long.MAX_VALUE));
+        
+        for (int b = 0; b < Histogram.BUCKETS; b++) {
+            assertEquals(b, Histogram.bucket(Histogram.lowest(b)));
+            assertEquals(b, Histogram.bucket(Histogram.highest(b)));
+            if (b > 0) {
+                assertEquals(Histogram.highest(b - 1) + 1,
+                        Histogram.lowest(b));
+            }
+        }
+    }
+    
+    @Test
+    public void quantilesAreAccurate() {
+        Histogram hist = new Histogram();
+        for (long v = 1; v <= 100000; v++) {
+            hist.record(v);
+        }
+        Histogram.Snapshot snap = hist.snapshot();
+        assertEquals(100000, snap.count);
+        
+        for (double q : new double[] {0.5, 0.99, 0.999}) {
+            double exact = q * 100000;
+            double error = Math.abs(snap.quantile(q) - exact) / exact;
+            assertTrue("Quantile " + q + " is " + snap.quantile(q),
+                    error <= 1.0 / Histogram.SUB_BUCKETS);
+        }
+        assertTrue(snap.max() >= 100000);
+        assertEquals(50000.0, snap.mean(), 50000.0 / Histogram.SUB_BUCKETS);
+    }
+    
+    @Test
+    public void resetStartsNewInterval() {
+        Histogram hist = new Histogram();
+        hist.record(10L);
+        hist.record(20L);
+        
+        Histogram.Snapshot first = hist.reset();
+        assertEquals(2, first.count);
+        assertEquals(0, hist.snapshot().count);
+        
+        hist.record(1000L);
+        Histogram.Snapshot both = first.merge(hist.snapshot());
+        assertEquals(3, both.count);
+        assertEquals(Histogram.highest(Histogram.bucket(1000L)), both.max());
+        assertEquals(20L, both.quantile(0.5));
+        
+        assertEquals(0L, Histogram.Snapshot.EMPTY.quantile(0.99));
+    }
+}
@@ -0,0 +1,155 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2017 Radomír Černoch (radomir.cernoch at gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.cernoch.executioner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the {@link KeyedPool} class.
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class KeyedPoolTest {
+    
+    @Test(timeout = 10000L)
+    public void sameKeyRunsInOrder() throws Exception {
+        ThreadPool pool = new ThreadPool(4, true);
+        KeyedPool<Integer> keyed = new KeyedPool<>(pool);
+        
+        final int keys = 8, tasks = 2000;
+        int[] last = new int[keys];
+        AtomicInteger[] running = new AtomicInteger[keys];
+        for (int k = 0; k < keys; k++) {
+            last[k] = -1;
+            running[k] = new AtomicInteger();
+        }
+        
+        List<Futuroid<Boolean,RuntimeException>> futs = new ArrayList<>();
+        for (int i = 0; i < tasks; i++) {
+            final int key = i % keys, seq = i / keys;
+            futs.add(keyed.submit(key, RuntimeException.class, () -> {
+                boolean alone = running[key].incrementAndGet() == 1;
+                boolean inOrder = last[key] == seq - 1;
+                last[key] = seq;
+                running[key].decrementAndGet();
+                return alone && inOrder;
+            }));
+        }
+        
+        for (Futuroid<Boolean,RuntimeException> fut : futs) {
+            assertTrue(fut.get());
+        }
+        
+        // The lane is forgotten just after its last future is done
+        while (keyed.keys() > 0) {
+            Thread.sleep(10L);
+        }
+        pool.shutdown();
+    }
+    
+    @Test(timeout = 2000L)
+    public void differentKeysRunInParallel() throws Exception {
+        ThreadPool pool = new ThreadPool(2, true);
+        KeyedPool<String> keyed = new KeyedPool<>(pool);
+        
+        long start = System.currentTimeMillis();
+        Futuroid<Integer,InterruptedException> a = keyed.submit(
+                "a", InterruptedException.class, new WaitAndReturn(300L, 1));
+        Futuroid<Integer,InterruptedException> b = keyed.submit(
+                "b", InterruptedException.class, new WaitAndReturn(300L, 2));
+        Futuroid<Integer,InterruptedException> a2 = keyed.submit(
+                "a", InterruptedException.class, new WaitAndReturn(0L, 3));
+        assertEquals(2, keyed.keys());
+        
+        assertEquals((Integer) 1, a.get());
+        assertEquals((Integer) 2, b.get());
+        assertEquals((Integer) 3, a2.get());
+        assertTrue(System.currentTimeMillis() - start < 550L);
+        pool.shutdown();
+    }
+    
+    @Test(timeout = 5000L)
+    public void droppedRunnerDropsLane() throws Exception {
+        ThreadPool pool = new ThreadPool.Builder(1).fixed(true)
+                .capacity(1, ThreadPool.Overflow.DROP_OLDEST, 0L).build();
+        KeyedPool<String> keyed = new KeyedPool<>(pool);
+        try {
+            pool.submit(InterruptedException.class, new WaitAndReturn(200L, 0));
+            Thread.sleep(50L);
+            
+            Futuroid<Integer,InterruptedException> k1 = keyed.submit(
+                    "k", InterruptedException.class, new WaitAndReturn(0L, 1));
+            Futuroid<Integer,InterruptedException> other = pool.submit(
+                    InterruptedException.class, new WaitAndReturn(0L, 2));
+            try {
+                k1.get();
+                fail("Dropped lane should be cancelled.");
+            } catch (InterruptedException ex) {
+                assertTrue(ex.getCause() instanceof QueueFull);
+            }
+            assertEquals(0, keyed.keys());
+            assertEquals((Integer) 2, other.get());
+            
+            // The key is usable again
+            Futuroid<Integer,InterruptedException> k2 = keyed.submit(
+                    "k", InterruptedException.class, new WaitAndReturn(0L, 3));
+            assertEquals((Integer) 3, k2.get());
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    @Test(timeout = 10000L)
+    public void callerRunsLaneDoesNotRecurse() throws Exception {
+        ThreadPool pool = new ThreadPool.Builder(1).fixed(true)
+                .capacity(1, ThreadPool.Overflow.CALLER_RUNS, 0L).build();
+        KeyedPool<String> keyed = new KeyedPool<>(pool);
+        try {
+            // The filler stays queued, every next runner runs inline
+            CountDownLatch gate = new CountDownLatch(1);
+            keyed.submit("k", InterruptedException.class, () -> {
+                gate.await();
+                pool.submit(RuntimeException.class, () -> null);
+                return 0;
+            });
+            
+            AtomicInteger done = new AtomicInteger();
+            Futuroid<Integer,RuntimeException> last = null;
+            for (int i = 0; i < 100_000; i++) {
+                last = keyed.submit("k", RuntimeException.class,
+                        done::incrementAndGet);
+            }
+            gate.countDown();
+            assertEquals((Integer) 100_000, last.get());
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2017 Radomír Černoch (radomir.cernoch at gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.cernoch.executioner;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Dispatch latency of the {@link ThreadPool} for each {@link ThreadPool.Idle}
+ * strategy.
+ * 
+ * <p>Not a unit test, run the {@link #main(String[])} method manually.
+ * Tiny tasks are submitted one by one with a pause in between, so that
+ * the workers are always idle. Prints the time from the submission until
+ * the task starts, as recorded by {@link ThreadPool#queueWait()}.</p>
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class LatencyBenchmark {
+    
+    /**
+     * Number of tasks submitted in a single measurement.
+     */
+    private static final int TASKS = 100_000;
+    
+    /**
+     * Nanoseconds between two submissions.
+     */
+    private static final long PAUSE = 20_000L;
+    
+    /**
+     * Submit {@link #TASKS} empty tasks with a {@link #PAUSE} in between.
+     * 
+     * @param idle waiting strategy of the workers
+     * @param workers number of threads in the pool
+     * @return distribution of the submit-to-start latency
+     */
+    static Histogram.Snapshot measure(ThreadPool.Idle idle, int workers)
+            throws InterruptedException {
+        
+        ThreadPool pool = new ThreadPool.Builder(workers).fixed(true)
+                .idle(idle).latencies(true).build();
+        Call<Void,RuntimeException> task = () -> null;
+        
+        Futuroid<Void,RuntimeException> last = null;
+        for (int i = 0; i < TASKS; i++) {
+            long next = System.nanoTime() + PAUSE;
+            last = pool.submit(RuntimeException.class, task);
+            while (System.nanoTime() < next) {
+                Thread.onSpinWait();
+            }
+        }
+        last.get();
+        
+        Histogram.Snapshot snapshot = pool.queueWait().snapshot();
+        pool.shutdown();
+        return snapshot;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        
+        // Warm-up
+        for (ThreadPool.Idle idle : ThreadPool.Idle.values()) {
+            measure(idle, 1);
+        }
+        LockSupport.parkNanos(100_000_000L);
+        
+        System.out.printf("%8s %8s %10s %10s %10s%n",
+                "idle", "workers", "p50 [us]", "p99 [us]", "max [us]");
+        for (ThreadPool.Idle idle : ThreadPool.Idle.values()) {
+            for (int workers = 1; workers <= 2; workers++) {
+                Histogram.Snapshot lat = measure(idle, workers);
+                System.out.printf("%8s %8d %10.1f %10.1f %10.1f%n",
+                        idle, workers,
+                        lat.quantile(0.50) / 1e3,
+                        lat.quantile(0.99) / 1e3,
+                        lat.max() / 1e3);
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2017 Radomír Černoch (radomir.cernoch at gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.cernoch.executioner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares {@link ThreadPool#map(Class, List, Fn)} with submitting
+ * a {@link Call} for every element.
+ * 
+ * <p>Not a unit test, run the {@link #main(String[])} method manually.</p>
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class MapBenchmark {
+    
+    /**
+     * Number of elements in the list.
+     */
+    private static final int SIZE = 10_000_000;
+    
+    /**
+     * Function that takes roughly the given number of iterations.
+     */
+    static long work(long seed, int iterations) {
+        long x = seed;
+        for (int i = 0; i < iterations; i++) {
+            x = x * 6364136223846793005L + 1442695040888963407L;
+        }
+        return x;
+    }
+    
+    /**
+     * Map the list by submitting a task per element.
+     * 
+     * @return elements per second
+     */
+    static double naive(ThreadPool pool, List<Long> input, int iterations)
+            throws InterruptedException {
+        long started = System.nanoTime();
+        List<Futuroid<Long,RuntimeException>> futs
+                = new ArrayList<>(input.size());
+        for (Long x : input) {
+            futs.add(pool.submit(RuntimeException.class,
+                    () -> work(x, iterations)));
+        }
+        List<Long> results = new ArrayList<>(input.size());
+        for (Futuroid<Long,RuntimeException> fut : futs) {
+            results.add(fut.get());
+        }
+        return input.size() * 1e9 / (System.nanoTime() - started);
+    }
+    
+    /**
+     * Map the list in adaptive chunks.
+     * 
+     * @return elements per second
+     */
+    static double chunked(ThreadPool pool, List<Long> input, int iterations)
+            throws InterruptedException {
+        long started = System.nanoTime();
+        pool.map(RuntimeException.class, input, x -> work(x, iterations));
+        return input.size() * 1e9 / (System.nanoTime() - started);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        ThreadPool pool = new ThreadPool(cpus, true);
+        
+        List<Long> input = new ArrayList<>(SIZE);
+        for (long i = 0; i < SIZE; i++) {
+            input.add(i);
+        }
+        
+        // Warm-up
+        naive(pool, input.subList(0, SIZE / 10), 10);
+        chunked(pool, input, 10);
+        
+        System.out.printf("%10s %14s %14s%n",
+                "iterations", "naive elem/s", "map elem/s");
+        for (int iterations = 1; iterations <= 1000; iterations *= 10) {
+            List<Long> sub = input.subList(0, SIZE / iterations);
+            System.out.printf("%10d %14.0f %14.0f%n", iterations,
+                    naive(pool, sub, iterations),
+                    chunked(pool, sub, iterations));
+        }
+        
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,98 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2017 Radomír Černoch (radomir.cernoch at gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.cernoch.executioner;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Throughput of the {@link ThreadPool} queue for tiny tasks.
+ * 
+ * <p>Not a unit test, run the {@link #main(String[])} method manually.
+ * Prints the number of tasks per second for various numbers
+ * of submitting and working threads.</p>
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class QueueBenchmark {
+    
+    /**
+     * Number of tasks submitted in a single measurement.
+     */
+    private static final int TASKS = 1_000_000;
+    
+    /**
+     * Submit {@link #TASKS} empty tasks and wait until they finish.
+     * 
+     * @param submitters number of threads calling the submit method
+     * @param workers number of threads in the pool
+     * @return tasks per second
+     */
+    static double measure(int submitters, int workers)
+            throws InterruptedException {
+        
+        ThreadPool pool = new ThreadPool(workers, true);
+        CountDownLatch done = new CountDownLatch(TASKS);
+        Call<Void,RuntimeException> task = () -> {
+            done.countDown();
+            return null;
+        };
+        
+        Thread[] threads = new Thread[submitters];
+        for (int i = 0; i < submitters; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < TASKS / submitters; j++) {
+                    pool.submit(RuntimeException.class, task);
+                }
+            });
+        }
+        
+        long started = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (int j = TASKS / submitters * submitters; j < TASKS; j++) {
+            pool.submit(RuntimeException.class, task);
+        }
+        done.await();
+        long elapsed = System.nanoTime() - started;
+        
+        pool.shutdown();
+        return TASKS * 1e9 / elapsed;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        
+        // Warm-up
+        measure(1, 1);
+        
+        System.out.printf("%10s %10s %14s%n", "submitters", "workers", "tasks/s");
+        for (int submitters = 1; submitters <= cpus; submitters *= 2) {
+            for (int workers = 1; workers <= cpus; workers *= 2) {
+                System.out.printf("%10d %10d %14.0f%n", submitters, workers,
+                        measure(submitters, workers));
+            }
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2017 Radomír Černoch (radomir.cernoch at gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.cernoch.executioner;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the {@link RecursiveCall} class.
+ *
+ * @author Radomír Černoch (radomir.cernoch at gmail.com)
+ */
+public class RecursiveCallTest {
+    
+    /**
+     * Naive Fibonacci numbers, which fork always, even without idle workers.
+     */
+    static class Fib extends RecursiveCall<Long, RuntimeException> {
+        private final int n;
+        
+        Fib(int n) {
+            this.n = n;
+        }
+        
+        @Override
+        protected Long compute() throws InterruptedException {
+            if (n < 2) {
+                return (long) n;
+            }
+            Futuroid<Long, RuntimeException> f1 = fork(new Fib(n - 1));
+            long f2 = invoke(new Fib(n - 2));
+            return join(f1) + f2;
+        }
+    }
+    
+    /**
+     * Sum of an array, which forks only if it is worth it.
+     */
+    static class Sum extends RecursiveCall<Long, RuntimeException> {
+        private final long[] array;
+        private final int from, to;
+        
+        Sum(long[] array, int from, int to) {
+            this.array = array;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected Long compute() throws InterruptedException {
+            if (to - from < 1000 || !forkable()) {
+                long sum = 0;
+                for (int i = from; i < to; i++) {
+                    sum += array[i];
+                }
+                return sum;
+            }
+            int mid = (from + to) >>> 1;
+            Futuroid<Long, RuntimeException> left
+                    = fork(new Sum(array, from, mid));
+            long right = invoke(new Sum(array, mid, to));
+            return join(left) + right;
+        }
+    }
+    
+    @Test(timeout = 5000L)
+    public void fixedPoolDoesNotDeadlock() throws Exception {
+        ThreadPool pool = new ThreadPool(2, true);
+        try {
+            assertEquals((Long) 6765L, new Fib(20)
+                    .fork(pool, RuntimeException.class).get());
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    @Test(timeout = 5000L)
+    public void stealingPoolJoinsOwnTasks() throws Exception {
+        ThreadPool pool = new ThreadPool.Builder(2)
+                .fixed(true).stealing(true).build();
+        try {
+            assertEquals((Long) 6765L, new Fib(20)
+                    .fork(pool, RuntimeException.class).get());
+            
+            long[] array = new long[1_000_000];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = i;
+            }
+            long expected = (long) array.length * (array.length - 1) / 2;
+            assertEquals((Long) expected, new Sum(array, 0, array.length)
+                    .fork(pool, RuntimeException.class).get());
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    @Test(timeout = 5000L)
+    public void drainingPoolDoesNotDeadlock() throws Exception {
+        ThreadPool pool = new ThreadPool.Builder(2)
+                .fixed(true).drain(8).build();
+        try {
+            assertEquals((Long) 610L, new Fib(15)
+                    .fork(pool, RuntimeException.class).get());
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    @Test(timeout = 5000L)
+    public void joinedTasksFreeTheirRoom() throws Exception {
+        ThreadPool pool = new ThreadPool.Builder(2).fixed(true)
+                .capacity(100, ThreadPool.Overflow.BLOCK, 0L).build();
+        try {
+            for (int i = 0; i < 5; i++) {
+                assertEquals((Long) 6765L, new Fib(20)
+                        .fork(pool, RuntimeException.class).get());
+            }
+            assertEquals(0, pool.queued());
+            pool.purge();
+            assertEquals(0, pool.queued());
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    @Test(timeout = 5000L)
+    public void helpedTaskKeepsItsInterrupt() throws Exception {
+        ThreadPool pool = new ThreadPool(2, true);
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch spinning = new CountDownLatch(1);
+        AtomicReference<Futuroid<Void,RuntimeException>> helped
+                = new AtomicReference<>();
+        try {
+            Futuroid<String,InterruptedException> parent = pool.submit(
+                    InterruptedException.class, () -> {
+                Futuroid<String,InterruptedException> other = pool.submit(
+                        InterruptedException.class, () -> {
+                    blocked.countDown();
+                    release.await();
+                    return "done";
+                });
+                blocked.await();
+                
+                // The parent's worker picks this task while it joins
+                helped.set(pool.submit(RuntimeException.class, () -> {
+                    spinning.countDown();
+                    while (!Thread.currentThread().isInterrupted()) {
+                        Thread.onSpinWait();
+                    }
+                    return null;
+                }));
+                return pool.join(other);
+            });
+            
+            spinning.await();
+            helped.get().cancel();
+            Thread.sleep(50L);
+            release.countDown();
+            assertEquals("done", parent.get());
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    @Test(timeout = 5000L)
+    public void joiningWorkerTakesNewTasks() throws Exception {
+        ThreadPool pool = new ThreadPool(2, true);
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch joining = new CountDownLatch(1);
+        try {
+            Futuroid<String,InterruptedException> parent = pool.submit(
+                    InterruptedException.class, () -> {
+                Futuroid<String,InterruptedException> other = pool.submit(
+                        InterruptedException.class, () -> {
+                    blocked.countDown();
+                    release.await();
+                    return "done";
+                });
+                blocked.await();
+                joining.countDown();
+                return pool.join(other);
+            });
+            
+            joining.await();
+            Thread.sleep(50L);
+            assertEquals((Integer) 1, pool.submit(RuntimeException.class,
+                    () -> 1).get());
+            release.countDown();
+            assertEquals("done", parent.get());
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -23,6 +23,21 @@
  */
 package io.github.cernoch.executioner;
 
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 import org.junit.Test;
 
 import static org.junit.Assert.*;
@@ -218,4 +233,1269 @@ public class ThreadPoolTest {
         // Thread should be cached
         assertEquals(1, pool.waiting());
     }
+
+    @Test(timeout = 2000L)
+    public void stealingPoolRunsNestedCalls() throws Exception {
+        ThreadPool pool = new ThreadPool.Builder(2)
+                .fixed(true).stealing(true).build();
+        try {
+            Futuroid<Integer,InterruptedException> fut = pool.submit(
+                    InterruptedException.class, () -> {
+                
+                Futuroid<Integer,InterruptedException> f1 = pool.submit(
+                        InterruptedException.class, new WaitAndReturn(200L, 1));
+                Futuroid<Integer,InterruptedException> f2 = pool.submit(
+                        InterruptedException.class, new WaitAndReturn(200L, 2));
+                return f1.get() + f2.get();
+            });
+            
+            assertEquals(Integer.valueOf(3), fut.get());
+            
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(timeout = 2000L)
+    public void virtualPoolRespectsLimit() throws Exception {
+        ThreadPool pool = new ThreadPool.Builder(0).virtual(2).build();
+        try {
+            Futuroid<Integer,InterruptedException> f1 = pool.submit(
+                    InterruptedException.class, new WaitAndReturn(200L, 0));
+            Futuroid<Integer,InterruptedException> f2 = pool.submit(
+                    InterruptedException.class, new WaitAndReturn(200L, 1));
+            Futuroid<Integer,InterruptedException> f3 = pool.submit(
+                    InterruptedException.class, new WaitAndReturn(200L, 2));
+
+            Thread.sleep(100L);
+            
+            assertEquals(Futuroid.Status.RUNNING, f1.status());
+            assertEquals(Futuroid.Status.RUNNING, f2.status());
+            assertEquals(Futuroid.Status.QUEUED,  f3.status());
+            
+            assertEquals((Integer) 2, f3.get());
+            assertEquals(0, pool.waiting());
+            
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(timeout = 10000L)
+    public void batchStartsFewThreads() throws Exception {
+        ThreadPool pool = new ThreadPool(2, false);
+        try {
+            List<WaitAndReturn> tasks = new ArrayList<>();
+            for (int i = 0; i < 2000; i++) {
+                tasks.add(new WaitAndReturn(0L, i));
+            }
+            
+            List<Futuroid<Integer,InterruptedException>> futs
+                    = pool.submitAll(InterruptedException.class, tasks);
+            int cpus = Runtime.getRuntime().availableProcessors();
+            assertTrue(pool.threads() <= 2 + cpus);
+            
+            for (int i = 0; i < futs.size(); i++) {
+                assertEquals((Integer) i, futs.get(i).get());
+            }
+            assertTrue(pool.threads() <= 2 + cpus);
+            
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    @Test(timeout = 2000L)
+    public void batchKeepsOrder() throws Exception {
+        ThreadPool pool = new ThreadPool.Builder(2)
+                .fixed(true).drain(4).build();
+        try {
+            List<WaitAndReturn> tasks = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                tasks.add(new WaitAndReturn(10L, i));
+            }
+            
+            List<Futuroid<Integer,InterruptedException>> futs
+                    = pool.submitAll(InterruptedException.class, tasks);
+            
+            assertEquals(tasks.size(), futs.size());
+            for (int i = 0; i < futs.size(); i++) {
+                assertEquals((Integer) i, futs.get(i).get());
+            }
+            
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(timeout = 2000L)
+    public void fullQueueRejects() throws Exception {
+        ThreadPool pool = new ThreadPool.Builder(1).fixed(true)
+                .capacity(1, ThreadPool.Overflow.REJECT, 0).build();
+        try {
+            pool.submit(InterruptedException.class, new WaitAndReturn(200L, 0));
+            Thread.sleep(100L);
+            pool.submit(InterruptedException.class, new WaitAndReturn(0L, 1));
+            assertEquals(1, pool.queued());
+            
+            try {
+                pool.offer(InterruptedException.class, new WaitAndReturn(0L, 2));
+                fail("Queue should be full.");
+            } catch (QueueFull ex) {
+                assertEquals(1, ex.capacity());
+            }
+            assertEquals(1, pool.rejected());
+            
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    @Test(timeout = 2000L, expected = InterruptedException.class)
+    public void fullQueueDropsOldest() throws Exception {
+        ThreadPool pool = new ThreadPool.Builder(1).fixed(true)
+                .capacity(1, ThreadPool.Overflow.DROP_OLDEST, 0).build();
+        try {
+            pool.submit(InterruptedException.class, new WaitAndReturn(200L, 0));
+            Thread.sleep(100L);
+            Futuroid<Integer,InterruptedException> oldest = pool.submit(
+                    InterruptedException.class, new WaitAndReturn(0L, 1));
+            Futuroid<Integer,InterruptedException> newest = pool.submit(
+                    InterruptedException.class, new WaitAndReturn(0L, 2));
+            
+            assertEquals((Integer) 2, newest.get());
+            assertEquals(1, pool.rejected());
+            assertEquals(0, pool.queued());
+            oldest.get();
+            
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(timeout = 2000L, expected = InterruptedException.class)
+    public void fullQueueDropsRankedTasks() throws Exception {
+        ThreadPool pool = new ThreadPool.Builder(1).fixed(true)
+                .capacity(1, ThreadPool.Overflow.DROP_OLDEST, 0).build();
+        try {
+            pool.submit(InterruptedException.class, new WaitAndReturn(200L, 0));
+            Thread.sleep(100L);
+            Futuroid<Integer,InterruptedException> ranked = pool.submit(
+                    InterruptedException.class, new WaitAndReturn(0L, 1), 5);
+            Futuroid<Integer,InterruptedException> plain = pool.submit(
+                    InterruptedException.class, new WaitAndReturn(0L, 2));
+            
+            assertEquals((Integer) 2, plain.get());
+            assertEquals(1, pool.rejected());
+            ranked.get();
+            
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(timeout = 5000L)
+    public void elasticPoolGrowsAndShrinks() throws Exception {
+        ThreadPool pool = new ThreadPool.Builder(0)
+                .max(2).spawnDelay(100L).keepAlive(200L).build();
+        try {
+            Futuroid<Integer,InterruptedException> f1 = pool.submit(
+                    InterruptedException.class, new WaitAndReturn(300L, 1));
+            Futuroid<Integer,InterruptedException> f2 = pool.submit(
+                    InterruptedException.class, new WaitAndReturn(300L, 2));
+            Futuroid<Integer,InterruptedException> f3 = pool.submit(
+                    InterruptedException.class, new WaitAndReturn(300L, 3));
+            
+            // Young tasks do not justify a new thread
+            Thread.sleep(100L);
+            assertEquals(1, pool.threads());
+            
+            f1.get();
+            Thread.sleep(100L);
+            assertEquals(2, pool.threads());
+            assertEquals(Futuroid.Status.RUNNING, f2.status());
+            assertEquals(Futuroid.Status.RUNNING, f3.status());
+            
+            f2.get();
+            f3.get();
+            Thread.sleep(500L);
+            assertEquals(0, pool.threads());
+            assertEquals(2, pool.spawned());
+            assertEquals(2, pool.retired());
+            
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(timeout = 5000L)
+    public void elasticPoolGrowsForRankedTasks() throws Exception {
+        ThreadPool pool = new ThreadPool.Builder(0)
+                .max(2).spawnDelay(100L).build();
+        try {
+            Futuroid<Integer,InterruptedException> f1 = pool.submit(
+                    InterruptedException.class, new WaitAndReturn(300L, 1), 0);
+            Futuroid<Integer,InterruptedException> f2 = pool.submit(
+                    InterruptedException.class, new WaitAndReturn(300L, 2), 0);
+            Futuroid<Integer,InterruptedException> f3 = pool.submit(
+                    InterruptedException.class, new WaitAndReturn(300L, 3), 0);
+            
+            // The plain queue is empty, the ranked tasks wait too long
+            f1.get();
+            Thread.sleep(100L);
+            assertEquals(2, pool.threads());
+            assertEquals(Futuroid.Status.RUNNING, f2.status());
+            assertEquals(Futuroid.Status.RUNNING, f3.status());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(timeout = 2000L)
+    public void shutdownNowCancelsQueued() throws Exception {
+        ThreadPool pool = new ThreadPool(1, true);
+        Futuroid<Integer,InterruptedException> running = pool.submit(
+                InterruptedException.class, new WaitAndReturn(5000L, 0));
+        Futuroid<Integer,InterruptedException> queued = pool.submit(
+                InterruptedException.class, new WaitAndReturn(0L, 1));
+        while (running.status() != Futuroid.Status.RUNNING) {
+            Thread.sleep(10L);
+        }
+        
+        List<Futuroid<?,?>> cancelled = pool.shutdownNow();
+        assertEquals(1, cancelled.size());
+        assertSame(queued, cancelled.get(0));
+        assertEquals(Futuroid.Status.DONE, queued.status());
+        
+        assertTrue(pool.awaitTermination(1000L));
+        assertEquals(Futuroid.Status.DONE, running.status());
+        assertFalse(pool.working());
+        
+        try {
+            queued.get();
+            fail("Queued task should be cancelled.");
+        } catch (InterruptedException ex) {
+            // expected
+        }
+    }
+    
+    @Test(timeout = 2000L)
+    public void shutdownGracefullyDrainsQueue() throws Exception {
+        ThreadPool pool = new ThreadPool(1, true);
+        Futuroid<Integer,InterruptedException> f1 = pool.submit(
+                InterruptedException.class, new WaitAndReturn(100L, 1));
+        Futuroid<Integer,InterruptedException> f2 = pool.submit(
+                InterruptedException.class, new WaitAndReturn(100L, 2));
+        
+        assertFalse(pool.shutdownGracefully(50L));
+        assertTrue(pool.exitting());
+        assertTrue(pool.awaitTermination(0L));
+        
+        assertEquals((Integer) 1, f1.get());
+        assertEquals((Integer) 2, f2.get());
+        
+        try {
+            pool.submit(InterruptedException.class, new WaitAndReturn(0L, 3));
+            fail("Closed pool should reject new tasks.");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+    }
+
+    @Test(timeout = 3000L)
+    public void terminatedThreadsAreForgotten() throws Exception {
+        ThreadPool pool = new ThreadPool.Builder(0).keepAlive(50L).build();
+        try {
+            for (int i = 0; i < 5; i++) {
+                Futuroid<Integer,InterruptedException> fut = pool.submit(
+                        InterruptedException.class, new WaitAndReturn(100L, i));
+                Thread.sleep(50L);
+                assertEquals(1, pool.busy());
+                assertEquals((Integer) i, fut.get());
+                
+                Thread.sleep(150L);
+                assertFalse(pool.working());
+            }
+            assertEquals(0, pool.busy());
+            assertEquals(5, pool.spawned());
+            assertEquals(5, pool.retired());
+            
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** Probe which counts the events into primitive fields. */
+    private static class CountingProbe implements Probe {
+        volatile long started, finished, ran;
+        
+        @Override
+        public void started(Future<?,?> task, long waited) {
+            started++;
+        }
+        
+        @Override
+        public void finished(Future<?,?> task,
+                long waited, long ran, boolean failed) {
+            this.ran += ran;
+            finished++;
+        }
+    }
+    
+    /**
+     * Number of bytes allocated by a thread, or {@code -1} if unknown.
+     */
+    private static long allocatedBytes(long threadId) {
+        Module me = ThreadPoolTest.class.getModule();
+        ModuleLayer.boot().findModule("java.management").ifPresent(me::addReads);
+        ModuleLayer.boot().findModule("jdk.management").ifPresent(me::addReads);
+        try {
+            return AllocatedBytes.of(threadId);
+        } catch (LinkageError | UnsupportedOperationException ex) {
+            return -1L;
+        }
+    }
+    
+    /** Kept apart, so that the management classes load lazily. */
+    private static class AllocatedBytes {
+        static long of(long threadId) {
+            java.lang.management.ThreadMXBean bean = java.lang.management
+                    .ManagementFactory.getThreadMXBean();
+            if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+                return -1L;
+            }
+            return ((com.sun.management.ThreadMXBean) bean)
+                    .getThreadAllocatedBytes(threadId);
+        }
+    }
+    
+    @Test(timeout = 5000L)
+    public void probeSeesFinishedTask() throws Exception {
+        AtomicInteger done = new AtomicInteger();
+        Probe probe = new Probe() {
+            @Override
+            public void finished(Future<?,?> task,
+                    long waited, long ran, boolean failed) {
+                try {
+                    if (task.status() == Future.Status.DONE
+                            && task.get() != null && task.cpuTime() >= 0) {
+                        done.incrementAndGet();
+                    }
+                } catch (Exception ex) {
+                    // test fails
+                }
+            }
+        };
+        ThreadPool pool = new ThreadPool.Builder(1)
+                .fixed(true).probe(probe).build();
+        try {
+            Futuroid<Integer,InterruptedException> fut = pool.submit(
+                    InterruptedException.class, new WaitAndReturn(0L, 1));
+            assertEquals((Integer) 1, fut.get(2000L));
+            assertEquals((Integer) 2, pool.submit(InterruptedException.class,
+                    new WaitAndReturn(0L, 2)).get(2000L));
+            assertTrue(done.get() >= 1);
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    @Test(timeout = 10000L)
+    public void workerDoesNotAllocate() throws Exception {
+        final int tasks = 10000;
+        CountingProbe probe = new CountingProbe();
+        ThreadPool pool = new ThreadPool.Builder(1)
+                .fixed(true).probe(probe).build();
+        try {
+            Call<Integer,RuntimeException> one = () -> 1;
+            List<Call<Integer,RuntimeException>> calls = new ArrayList<>();
+            for (int i = 0; i < tasks; i++) {
+                calls.add(one);
+            }
+            
+            // Warm up the worker loop
+            for (int round = 0; round < 5; round++) {
+                List<Futuroid<Integer,RuntimeException>> futs
+                        = pool.submitAll(RuntimeException.class, calls);
+                futs.get(futs.size() - 1).get();
+            }
+            
+            long worker = pool.submit(RuntimeException.class,
+                    () -> Thread.currentThread().getId()).get();
+            
+            // Hold the worker, so that all tasks are queued at once
+            CountDownLatch gate = new CountDownLatch(1);
+            Futuroid<Long,InterruptedException> blocker = pool.submit(
+                    InterruptedException.class, () -> {
+                        gate.await();
+                        return allocatedBytes(worker);
+                    });
+            List<Futuroid<Integer,RuntimeException>> futs
+                    = pool.submitAll(RuntimeException.class, calls);
+            gate.countDown();
+            
+            long before = blocker.get();
+            long after = pool.submit(RuntimeException.class,
+                    () -> allocatedBytes(worker)).get();
+            assertEquals((Integer) 1, futs.get(tasks - 1).get());
+            
+            // The probe of the last task may still be running
+            assertTrue(probe.finished >= 6 * tasks + 2);
+            assertTrue(probe.ran > 0);
+            
+            if (before >= 0 && after >= 0) {
+                assertTrue("Worker allocated " + (after - before)
+                        + " bytes on " + tasks + " tasks.",
+                        after - before < tasks);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(timeout = 3000L)
+    public void statsCountOutcomes() throws Exception {
+        ThreadPool pool = new ThreadPool(1, true);
+        for (int i = 0; i < 3; i++) {
+            pool.submit(InterruptedException.class, new WaitAndReturn(0L, i));
+        }
+        try {
+            pool.submit(MyException.class, new ThrowMyException()).get();
+            fail("Task should fail.");
+        } catch (MyException ex) {
+            // expected
+        }
+        
+        // The outcome is counted just after the future is done
+        PoolStats stats = pool.stats();
+        while (stats.completed + stats.failed < 4) {
+            Thread.sleep(10L);
+            stats = pool.stats();
+        }
+        assertEquals(4, stats.submitted);
+        assertEquals(3, stats.completed);
+        assertEquals(1, stats.failed);
+        assertEquals(0, stats.cancelled);
+        assertEquals(1, stats.live);
+        assertTrue(stats.elapsed > 0);
+        
+        pool.submit(InterruptedException.class, new WaitAndReturn(200L, 0));
+        pool.submit(InterruptedException.class, new WaitAndReturn(0L, 1));
+        Thread.sleep(50L);
+        stats = pool.stats();
+        assertEquals(6, stats.submitted);
+        assertEquals(1, stats.queued);
+        assertEquals(1, stats.busy);
+        assertEquals(0, stats.idle);
+        
+        pool.shutdownNow();
+        assertTrue(pool.awaitTermination(1000L));
+        stats = pool.stats();
+        assertEquals(1, stats.cancelled);
+        assertEquals(0, stats.queued);
+        assertEquals(0, stats.live);
+    }
+
+    @Test(timeout = 3000L)
+    public void latenciesAreRecorded() throws Exception {
+        ThreadPool pool = new ThreadPool.Builder(1)
+                .fixed(true).latencies(true).build();
+        try {
+            pool.submit(InterruptedException.class, new WaitAndReturn(100L, 0));
+            pool.submit(InterruptedException.class, new WaitAndReturn(0L, 1))
+                    .get();
+            
+            // The histograms are filled just after the future is done
+            while (pool.runTime().snapshot().count < 2) {
+                Thread.sleep(10L);
+            }
+            Histogram.Snapshot ran = pool.runTime().reset();
+            Histogram.Snapshot waited = pool.queueWait().reset();
+            assertTrue(ran.max() >= 100_000_000L);
+            assertTrue(waited.max() >= 50_000_000L);
+            assertEquals(0, pool.runTime().snapshot().count);
+        } finally {
+            pool.shutdown();
+        }
+        
+        assertNull(new ThreadPool.Builder(0).build().runTime());
+    }
+
+    @Test(timeout = 5000L)
+    public void mapKeepsOrder() throws Exception {
+        ThreadPool pool = new ThreadPool(4, true);
+        try {
+            List<Integer> input = new ArrayList<>();
+            for (int i = 0; i < 100_000; i++) {
+                input.add(i);
+            }
+            List<Integer> squares = pool.map(
+                    RuntimeException.class, input, x -> x * x);
+            assertEquals(input.size(), squares.size());
+            for (int i = 0; i < input.size(); i++) {
+                assertEquals((Integer) (i * i), squares.get(i));
+            }
+            
+            // Concatenation is associative, but not commutative
+            String digits = pool.reduce(RuntimeException.class, input,
+                    x -> Integer.toString(x % 10), "", String::concat);
+            assertEquals(input.size(), digits.length());
+            assertTrue(digits.startsWith("01234567890123"));
+            
+            assertEquals("-", pool.reduce(RuntimeException.class,
+                    new ArrayList<Integer>(), x -> "x", "-", String::concat));
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    @Test(timeout = 5000L, expected = MyException.class)
+    public void mapFailsFast() throws Exception {
+        ThreadPool pool = new ThreadPool(2, true);
+        try {
+            List<Integer> input = new ArrayList<>();
+            for (int i = 0; i < 1_000_000; i++) {
+                input.add(i);
+            }
+            pool.map(MyException.class, input, x -> {
+                if (x == 10) {
+                    throw new MyException();
+                }
+                LockSupport.parkNanos(1_000_000L);
+                return x;
+            });
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test(timeout = 5000L)
+    public void parallelForAlignsChunks() throws Exception {
+        ThreadPool pool = new ThreadPool(4, true);
+        try {
+            double[] squares = new double[1_000_003];
+            pool.parallelFor(RuntimeException.class, 3, squares.length,
+                    RangeBody.fill(squares, i -> (double) i * i));
+            for (int i = 0; i < squares.length; i++) {
+                assertEquals(i < 3 ? 0.0 : (double) i * i, squares[i], 0.0);
+            }
+            
+            DoubleBuffer buffer = ByteBuffer.allocateDirect(8 * 100_000)
+                    .alignedSlice(64).asDoubleBuffer();
+            pool.parallelFor(RuntimeException.class, 0, buffer.capacity(),
+                    RangeBody.fill(buffer, i -> i));
+            for (int i = 0; i < buffer.capacity(); i++) {
+                assertEquals(i, buffer.get(i), 0.0);
+            }
+            
+            LongAdder misaligned = new LongAdder();
+            LongAdder covered = new LongAdder();
+            pool.parallelFor(RuntimeException.class, 5, 1_000_005,
+                    (from, to) -> {
+                        if ((from != 5 && from % 64 != 0)
+                                || (to != 1_000_005 && to % 64 != 0)) {
+                            misaligned.increment();
+                        }
+                        covered.add(to - from);
+                    });
+            assertEquals(0, misaligned.sum());
+            assertEquals(1_000_000, covered.sum());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(timeout = 5000L)
+    public void executorServiceSharesWorkers() throws Exception {
+        ThreadPool pool = new ThreadPool(2, true);
+        ExecutorService exec = pool.asExecutorService();
+        
+        assertEquals((Integer) 42, CompletableFuture
+                .supplyAsync(() -> 42, exec).get());
+        
+        List<Callable<Integer>> calls = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            final int n = i;
+            calls.add(() -> n);
+        }
+        List<java.util.concurrent.Future<Integer>> all = exec.invokeAll(calls);
+        for (int i = 0; i < 10; i++) {
+            assertEquals((Integer) i, all.get(i).get());
+        }
+        assertTrue(exec.invokeAny(calls) < 10);
+        
+        // Queued tasks are finished after shutdown
+        pool.submit(InterruptedException.class, new WaitAndReturn(100L, 0));
+        java.util.concurrent.Future<Integer> queued = exec.submit(() -> 7);
+        exec.shutdown();
+        assertTrue(exec.isShutdown());
+        try {
+            exec.execute(() -> {});
+            fail("Shut down executor should reject tasks.");
+        } catch (RejectedExecutionException ex) {
+            // expected
+        }
+        assertTrue(exec.awaitTermination(1, TimeUnit.SECONDS));
+        assertTrue(exec.isTerminated());
+        assertEquals((Integer) 7, queued.get());
+    }
+    
+    @Test(timeout = 5000L)
+    public void executorServiceReturnsNeverStarted() throws Exception {
+        ThreadPool pool = new ThreadPool(1, true);
+        ExecutorService exec = pool.asExecutorService();
+        
+        exec.submit(() -> {
+            Thread.sleep(1000L);
+            return null;
+        });
+        Thread.sleep(50L);
+        Runnable never = () -> {};
+        exec.execute(never);
+        
+        List<Runnable> left = exec.shutdownNow();
+        assertEquals(1, left.size());
+        assertSame(never, left.get(0));
+        assertTrue(exec.awaitTermination(1, TimeUnit.SECONDS));
+    }
+
+    @Test(timeout = 5000L)
+    public void executorServiceWaitsLessThanMillisecond() throws Exception {
+        ThreadPool pool = new ThreadPool(1, true);
+        ExecutorService exec = pool.asExecutorService();
+        try {
+            exec.submit(() -> {
+                Thread.sleep(1000L);
+                return null;
+            });
+            exec.shutdown();
+            
+            // Neither rounded down to "check once", nor to "for ever"
+            long start = System.nanoTime();
+            assertFalse(exec.awaitTermination(500L, TimeUnit.MICROSECONDS));
+            assertTrue(System.nanoTime() - start >= 500_000L);
+            assertFalse(exec.awaitTermination(0L, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(timeout = 10000L)
+    public void executeRecyclesCarriers() throws Exception {
+        ThreadPool pool = new ThreadPool(2, true);
+        try {
+            Futuroid<Integer,InterruptedException> first = pool.submitReusable(
+                    InterruptedException.class, new WaitAndReturn(0L, 1));
+            assertEquals((Integer) 1, first.get());
+            assertTrue(pool.recycle(first));
+            
+            Futuroid<Integer,InterruptedException> second = pool.submitReusable(
+                    InterruptedException.class, new WaitAndReturn(0L, 2));
+            assertEquals((Integer) 2, second.get());
+            assertFalse(pool.recycle(pool.submit(
+                    InterruptedException.class, new WaitAndReturn(0L, 3))));
+            
+            final int tasks = 10000;
+            AtomicInteger done = new AtomicInteger();
+            Runnable task = done::incrementAndGet;
+            for (int round = 0; round < 5; round++) {
+                done.set(0);
+                
+                // Keep at most 100 tasks in flight, as a steady stream
+                long before = allocatedBytes(Thread.currentThread().getId());
+                for (int i = 0; i < tasks; i++) {
+                    while (i - done.get() > 100) {
+                        Thread.onSpinWait();
+                    }
+                    pool.execute(task);
+                }
+                long after = allocatedBytes(Thread.currentThread().getId());
+                
+                // Only the queue node is allocated, once warmed up
+                if (round > 0 && before >= 0 && after >= 0) {
+                    assertTrue("Submitter allocated " + (after - before)
+                            + " bytes on " + tasks + " tasks.",
+                            after - before < 64L * tasks);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(timeout = 5000L)
+    public void cancelledTasksLeaveTheQueue() throws Exception {
+        ThreadPool pool = new ThreadPool.Builder(1).fixed(true)
+                .capacity(10_000, ThreadPool.Overflow.REJECT, 0L).build();
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            Futuroid<Integer,InterruptedException> blocker = pool.submit(
+                    InterruptedException.class, () -> {
+                        release.await();
+                        return 0;
+                    });
+            Thread.sleep(50L);
+            
+            List<Futuroid<Integer,InterruptedException>> futs
+                    = new ArrayList<>();
+            for (int i = 0; i < 10_000; i++) {
+                futs.add(pool.submit(InterruptedException.class,
+                        new WaitAndReturn(0L, i)));
+            }
+            assertEquals(10_000, pool.queued());
+            for (Futuroid<Integer,InterruptedException> fut : futs) {
+                fut.cancel();
+            }
+            assertEquals(0, pool.queued());
+            assertEquals(10_000, pool.stats().cancelled);
+            
+            // Purged entries have freed their room in the bounded queue
+            Futuroid<Integer,InterruptedException> last = null;
+            for (int i = 0; i < 10_000; i++) {
+                last = pool.submit(InterruptedException.class,
+                        new WaitAndReturn(0L, i));
+            }
+            
+            release.countDown();
+            assertEquals((Integer) 0, blocker.get());
+            assertEquals((Integer) 9_999, last.get());
+            while (pool.stats().completed < 10_001) {
+                Thread.sleep(10L);
+            }
+            assertEquals(0, pool.stats().failed);
+            assertEquals(0, pool.queued());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(timeout = 5000L)
+    public void earliestDeadlineGoesFirst() throws Exception {
+        ThreadPool pool = new ThreadPool(1, true);
+        try {
+            Futuroid<Integer,InterruptedException> blocker = pool.submit(
+                    InterruptedException.class, new WaitAndReturn(200L, 0));
+            Thread.sleep(50L);
+            
+            List<Integer> order = Collections.synchronizedList(
+                    new ArrayList<>());
+            Instant now = Instant.now();
+            Futuroid<Boolean,RuntimeException> plain = pool.submit(
+                    RuntimeException.class, () -> order.add(0));
+            for (int i = 3; i >= 1; i--) {
+                final int id = i;
+                pool.submit(RuntimeException.class, () -> order.add(id),
+                        now.plusSeconds(id));
+            }
+            
+            assertEquals((Integer) 0, blocker.get());
+            plain.get();
+            assertEquals(List.of(1, 2, 3, 0), order);
+            assertEquals(0, pool.missed());
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    @Test
+    public void pastDeadlineIsDueNow() {
+        long before = System.nanoTime();
+        long past = ThreadPool.nanoTime(Instant.now().minusSeconds(3600L));
+        assertTrue(past - before >= 0);
+        assertTrue(System.nanoTime() - past >= 0);
+        assertTrue(ThreadPool.nanoTime(Instant.MIN) - before >= 0);
+        
+        long far = ThreadPool.nanoTime(Instant.MAX);
+        assertTrue(far != Futuroid.NO_DEADLINE);
+        assertTrue(far - System.nanoTime() > 0);
+    }
+    
+    @Test(timeout = 5000L)
+    public void overdueTasksExpire() throws Exception {
+        ThreadPool pool = new ThreadPool.Builder(1).fixed(true)
+                .expire(true).build();
+        try {
+            Futuroid<Integer,InterruptedException> blocker = pool.submit(
+                    InterruptedException.class, new WaitAndReturn(200L, 0));
+            Thread.sleep(50L);
+            
+            Futuroid<Integer,InterruptedException> late = pool.submit(
+                    InterruptedException.class, new WaitAndReturn(0L, 1),
+                    Instant.now().plusMillis(50L));
+            Futuroid<Integer,InterruptedException> timely = pool.submit(
+                    InterruptedException.class, new WaitAndReturn(0L, 2),
+                    Instant.now().plusSeconds(60L));
+            
+            assertEquals((Integer) 0, blocker.get());
+            assertEquals((Integer) 2, timely.get());
+            try {
+                late.get();
+                fail("Overdue task should have expired.");
+            } catch (InterruptedException ex) {
+                assertTrue(ex.getCause() instanceof TimeoutException);
+            }
+            assertEquals(1, pool.missed());
+            assertEquals(1, pool.stats().missed);
+            assertEquals(1, pool.stats().cancelled);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(timeout = 5000L)
+    public void higherPriorityGoesFirst() throws Exception {
+        ThreadPool pool = new ThreadPool.Builder(1).fixed(true)
+                .aging(1000L).build();
+        try {
+            Futuroid<Integer,InterruptedException> blocker = pool.submit(
+                    InterruptedException.class, new WaitAndReturn(200L, 0));
+            Thread.sleep(50L);
+            
+            List<Integer> order = Collections.synchronizedList(
+                    new ArrayList<>());
+            Futuroid<Boolean,RuntimeException> last = null;
+            for (int priority : new int[] {0, 1, 5, 1}) {
+                final int id = priority;
+                last = pool.submit(RuntimeException.class,
+                        () -> order.add(id), priority);
+            }
+            
+            assertEquals((Integer) 0, blocker.get());
+            while (order.size() < 4) {
+                Thread.sleep(10L);
+            }
+            assertEquals(List.of(5, 1, 1, 0), order);
+            assertTrue(last.get());
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    @Test(timeout = 5000L)
+    public void plainTasksDoNotStarve() throws Exception {
+        ThreadPool pool = new ThreadPool(1, true);
+        try {
+            Futuroid<Integer,InterruptedException> blocker = pool.submit(
+                    InterruptedException.class, new WaitAndReturn(200L, 0));
+            Thread.sleep(50L);
+            
+            AtomicInteger ranked = new AtomicInteger();
+            Futuroid<Integer,RuntimeException> plain = pool.submit(
+                    RuntimeException.class, ranked::get);
+            for (int i = 0; i < 1000; i++) {
+                pool.submit(RuntimeException.class,
+                        ranked::incrementAndGet, 1);
+            }
+            
+            assertEquals((Integer) 0, blocker.get());
+            assertTrue(plain.get() < 100);
+            
+            // Waiting for a ranked task would boost it
+            while (ranked.get() < 1000) {
+                Thread.sleep(10L);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    @Test(timeout = 5000L)
+    public void waitingTasksAge() throws Exception {
+        ThreadPool pool = new ThreadPool.Builder(1).fixed(true)
+                .aging(1L).build();
+        try {
+            Futuroid<Integer,InterruptedException> blocker = pool.submit(
+                    InterruptedException.class, new WaitAndReturn(200L, 0));
+            Thread.sleep(20L);
+            
+            List<Integer> order = Collections.synchronizedList(
+                    new ArrayList<>());
+            pool.submit(RuntimeException.class, () -> order.add(0), 0);
+            Thread.sleep(100L);
+            Futuroid<Boolean,RuntimeException> urgent = pool.submit(
+                    RuntimeException.class, () -> order.add(10), 10);
+            
+            // Calling urgent.get() now would boost the urgent task
+            assertEquals((Integer) 0, blocker.get());
+            while (order.size() < 2) {
+                Thread.sleep(10L);
+            }
+            assertEquals(List.of(0, 10), order);
+            assertTrue(urgent.get());
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    @Test(timeout = 5000L)
+    public void waitingForTaskBoostsIt() throws Exception {
+        ThreadPool pool = new ThreadPool.Builder(1).fixed(true).build();
+        try {
+            Futuroid<Integer,InterruptedException> blocker = pool.submit(
+                    InterruptedException.class, new WaitAndReturn(100L, 0));
+            Thread.sleep(20L);
+            
+            AtomicInteger finished = new AtomicInteger();
+            for (int i = 0; i < 20; i++) {
+                pool.submit(RuntimeException.class, () -> {
+                    LockSupport.parkNanos(20_000_000L);
+                    return finished.incrementAndGet();
+                }, 100);
+            }
+            Futuroid<Integer,RuntimeException> batch = pool.submit(
+                    RuntimeException.class, finished::get, -100);
+            
+            assertEquals((Integer) 0, batch.get());
+            assertEquals((Integer) 0, blocker.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroTickIsRejected() {
+        new ThreadPool.Builder(1).tick(0L);
+    }
+
+    @Test(timeout = 5000L)
+    public void scheduledTaskWaitsForDelay() throws Exception {
+        ThreadPool pool = new ThreadPool(1, true);
+        try {
+            long start = System.nanoTime();
+            Futuroid<Integer,InterruptedException> fut = pool.schedule(
+                    InterruptedException.class, new WaitAndReturn(0L, 7), 100L);
+            Thread.sleep(50L);
+            assertEquals(Futuroid.Status.QUEUED, fut.status());
+            assertEquals(0, pool.stats().submitted);
+            
+            assertEquals((Integer) 7, fut.get());
+            assertTrue(System.nanoTime() - start >= 100_000_000L);
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    @Test(timeout = 10000L)
+    public void cancelledTimersNeverFire() throws Exception {
+        ThreadPool pool = new ThreadPool(2, true);
+        try {
+            AtomicInteger runs = new AtomicInteger();
+            List<Futuroid<Integer,RuntimeException>> futs = new ArrayList<>();
+            for (int i = 0; i < 200_000; i++) {
+                futs.add(pool.schedule(RuntimeException.class,
+                        runs::incrementAndGet, 60_000L + i % 1000));
+            }
+            for (Futuroid<Integer,RuntimeException> fut : futs) {
+                fut.cancel();
+            }
+            Futuroid<Integer,RuntimeException> last = pool.schedule(
+                    RuntimeException.class, runs::get, 1200L);
+            
+            assertEquals((Integer) 0, last.get());
+            assertEquals(1, pool.stats().submitted);
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    @Test(timeout = 5000L)
+    public void fixedRateRepeatsUntilCancelled() throws Exception {
+        ThreadPool pool = new ThreadPool(1, true);
+        try {
+            AtomicInteger runs = new AtomicInteger();
+            Futuroid<Void,RuntimeException> series = pool.scheduleAtFixedRate(
+                    RuntimeException.class, runs::incrementAndGet, 0L, 20L);
+            Thread.sleep(210L);
+            series.cancel();
+            int seen = runs.get();
+            assertTrue("Only " + seen + " runs", seen >= 5 && seen <= 12);
+            
+            Thread.sleep(100L);
+            assertTrue(runs.get() <= seen + 1);
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    @Test(timeout = 5000L, expected = MyException.class)
+    public void fixedRateStopsOnFailure() throws Exception {
+        ThreadPool pool = new ThreadPool(1, true);
+        try {
+            AtomicInteger runs = new AtomicInteger();
+            Futuroid<Void,MyException> series = pool.scheduleAtFixedRate(
+                    MyException.class, () -> {
+                        if (runs.incrementAndGet() == 3) {
+                            throw new MyException();
+                        }
+                        return null;
+                    }, 10L, 10L);
+            series.get();
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    @Test(timeout = 5000L)
+    public void shutdownCancelsTimers() throws Exception {
+        ThreadPool pool = new ThreadPool(1, true);
+        Futuroid<Integer,InterruptedException> delayed = pool.schedule(
+                InterruptedException.class, new WaitAndReturn(0L, 1), 60_000L);
+        Futuroid<Void,RuntimeException> series = pool.scheduleAtFixedRate(
+                RuntimeException.class, () -> null, 60_000L, 1L);
+        pool.shutdown();
+        
+        try {
+            delayed.get();
+            fail("Delayed task should be cancelled.");
+        } catch (InterruptedException ex) {
+            // expected
+        }
+        try {
+            series.get();
+            fail("Periodic task should be cancelled.");
+        } catch (InterruptedException ex) {
+            // expected
+        }
+    }
+
+    @Test(timeout = 5000L)
+    public void poolTimesOutRunawayTask() throws Exception {
+        ThreadPool pool = new ThreadPool(1, true);
+        try {
+            long start = System.nanoTime();
+            WaitAndReturn runaway = new WaitAndReturn(10_000L, 1);
+            Futuroid<Integer,InterruptedException> fut = pool.submitWithTimeout(
+                    InterruptedException.class, 100L, runaway);
+            
+            // The worker is free again, although nobody waits for the future
+            Futuroid<Integer,InterruptedException> next = pool.submit(
+                    InterruptedException.class, new WaitAndReturn(0L, 2));
+            assertEquals((Integer) 2, next.get());
+            assertTrue(System.nanoTime() - start < 5_000_000_000L);
+            assertFalse(runaway.returned);
+            
+            try {
+                fut.get();
+                fail("Runaway task should have timed out.");
+            } catch (InterruptedException ex) {
+                TimeoutException cause = (TimeoutException) ex.getCause();
+                assertEquals(100L, cause.timeOut());
+                assertTrue(cause.getCause() instanceof HereWeWere);
+                boolean slept = false;
+                for (StackTraceElement e : cause.getCause().getStackTrace()) {
+                    slept |= e.getClassName().equals(
+                            WaitAndReturn.class.getName());
+                }
+                assertTrue(slept);
+            }
+            assertEquals(1, pool.stats().failed);
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    @Test(timeout = 5000L)
+    public void fastTaskIgnoresTimeOut() throws Exception {
+        ThreadPool pool = new ThreadPool(2, true);
+        try {
+            List<Futuroid<Integer,InterruptedException>> futs
+                    = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                futs.add(pool.submitWithTimeout(InterruptedException.class, 50L,
+                        new WaitAndReturn(0L, i)));
+            }
+            for (int i = 0; i < 1000; i++) {
+                assertEquals((Integer) i, futs.get(i).get());
+            }
+            Thread.sleep(100L);
+            for (int i = 0; i < 1000; i++) {
+                assertEquals((Integer) i, futs.get(i).get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(timeout = 10000L)
+    public void gracefulShutdownKeepsTimeOuts() throws Exception {
+        ThreadPool pool = new ThreadPool(1, true);
+        WaitAndReturn runaway = new WaitAndReturn(3000L, 1);
+        Futuroid<Integer,InterruptedException> fut = pool.submitWithTimeout(
+                InterruptedException.class, 100L, runaway);
+        
+        assertTrue(pool.shutdownGracefully(1500L));
+        assertFalse(runaway.returned);
+        try {
+            fut.get();
+            fail("Runaway task should have timed out.");
+        } catch (InterruptedException ex) {
+            assertTrue(ex.getCause() instanceof TimeoutException);
+        }
+    }
+
+    @Test(timeout = 10000L)
+    public void idleStrategiesDispatchTasks() throws Exception {
+        for (ThreadPool.Idle idle : ThreadPool.Idle.values()) {
+            ThreadPool pool = new ThreadPool.Builder(2).fixed(true)
+                    .idle(idle).build();
+            try {
+                for (int i = 0; i < 1000; i++) {
+                    Futuroid<Integer,InterruptedException> fut = pool.submit(
+                            InterruptedException.class, new WaitAndReturn(0L, i));
+                    assertEquals((Integer) i, fut.get());
+                }
+                while (pool.stats().completed < 1000) {
+                    Thread.sleep(1L);
+                }
+                assertEquals(0, pool.queued());
+            } finally {
+                pool.shutdown();
+            }
+            assertTrue(idle.toString(), pool.awaitTermination(1000L));
+        }
+    }
+    
+    @Test(timeout = 5000L)
+    public void spinningWorkersRetire() throws Exception {
+        ThreadPool pool = new ThreadPool.Builder(0).keepAlive(50L)
+                .idle(ThreadPool.Idle.SPIN).build();
+        try {
+            assertEquals((Integer) 1, pool.submit(InterruptedException.class,
+                    new WaitAndReturn(0L, 1)).get());
+            while (pool.threads() > 0) {
+                Thread.sleep(10L);
+            }
+            assertEquals((Integer) 2, pool.submit(InterruptedException.class,
+                    new WaitAndReturn(0L, 2)).get());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(timeout = 5000L)
+    public void futureNeedsNoMonitor() throws Exception {
+        ThreadPool pool = new ThreadPool(1, true);
+        try {
+            Futuroid<Integer,InterruptedException> fut = pool.submit(
+                    InterruptedException.class, new WaitAndReturn(50L, 1));
+            
+            // Neither the worker nor the waiter needs the future's monitor
+            synchronized (fut) {
+                assertEquals((Integer) 1, fut.get());
+                assertEquals(Futuroid.Status.DONE, fut.status());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    @Test(timeout = 5000L)
+    public void allWaitersWakeUp() throws Exception {
+        ThreadPool pool = new ThreadPool(1, true);
+        try {
+            Futuroid<Integer,InterruptedException> fut = pool.submit(
+                    InterruptedException.class, new WaitAndReturn(200L, 1));
+            
+            AtomicInteger woken = new AtomicInteger();
+            List<Thread> waiters = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                final long timeOut = i % 2 == 0 ? 10L : 0L;
+                Thread waiter = new Thread(() -> {
+                    try {
+                        if (timeOut > 0) {
+                            try {
+                                fut.get(timeOut);
+                            } catch (TimeoutException ex) {
+                                // expected, leaves the waiter stack
+                            }
+                        }
+                        if (fut.get() == 1) {
+                            woken.incrementAndGet();
+                        }
+                    } catch (InterruptedException ex) {
+                        // test fails
+                    }
+                });
+                waiter.start();
+                waiters.add(waiter);
+            }
+            for (Thread waiter : waiters) {
+                waiter.join();
+            }
+            assertEquals(8, woken.get());
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    @Test(timeout = 30000L)
+    public void carriersSurviveConcurrentRecycling() throws Exception {
+        ThreadPool pool = new ThreadPool(2, true);
+        try {
+            AtomicInteger wrong = new AtomicInteger();
+            List<Thread> consumers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                final int base = t * 2000;
+                Thread consumer = new Thread(() -> {
+                    try {
+                        for (int i = 0; i < 2000; i++) {
+                            Futuroid<Integer,InterruptedException> fut
+                                    = pool.submitReusable(
+                                    InterruptedException.class,
+                                    new WaitAndReturn(0L, base + i));
+                            if (fut.get() != base + i || !pool.recycle(fut)) {
+                                wrong.incrementAndGet();
+                            }
+                        }
+                    } catch (InterruptedException ex) {
+                        wrong.incrementAndGet();
+                    }
+                });
+                consumer.start();
+                consumers.add(consumer);
+            }
+            for (Thread consumer : consumers) {
+                consumer.join();
+            }
+            assertEquals(0, wrong.get());
+            assertEquals(0, pool.queued());
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    @Test(timeout = 30000L)
+    public void closingPoolLeavesNoHandedTask() throws Exception {
+        for (int round = 0; round < 200; round++) {
+            ThreadPool pool = new ThreadPool(2, true);
+            List<Futuroid<Integer,InterruptedException>> futs
+                    = new ArrayList<>();
+            Thread submitter = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 100; i++) {
+                        futs.add(pool.submit(InterruptedException.class,
+                                new WaitAndReturn(0L, i)));
+                    }
+                } catch (IllegalStateException ex) {
+                    // The pool has been closed
+                }
+            });
+            submitter.start();
+            if (round % 2 == 0) {
+                pool.shutdown();
+            } else {
+                assertTrue(pool.shutdownGracefully(0L));
+            }
+            submitter.join();
+            
+            // Every task is either executed or cancelled
+            for (Futuroid<Integer,InterruptedException> fut : futs) {
+                try {
+                    fut.get();
+                } catch (InterruptedException ex) {
+                    assertEquals(Future.Status.DONE, fut.status());
+                }
+            }
+        }
+    }
 }